@@ -0,0 +1,114 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Shared set-up for the benchmarks: a throw-away data directory for the database and the
+ * indexes, and reproducible synthetic articles. The words follow a rough Zipf distribution,
+ * like real headlines, so some search terms match many articles and most match few.
+ */
+final class BenchData {
+
+    static final String[] CATEGORIES = {"Business-Markets", "India-Science", "India-Top-Stories", "Entertainment-Times"};
+
+    private static final String[] VOCABULARY = vocabulary(5000);
+
+    private final Random random;
+    private long nextId;
+
+    BenchData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Points data.dir at a new temporary directory, so DatabaseManager and SearchManager
+     * open fresh files there, and silences their per-call logging.
+     */
+    static Path useTemporaryDataDir(String prefix) {
+        try {
+            Path dir = Files.createTempDirectory(prefix);
+            System.setProperty("data.dir", dir.toString());
+            // Results reach JMH over its own channel; the application's progress lines would
+            // only flood the console (and cost the console's time in the measurement).
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            return dir;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A new article with a unique link, published a little before the previous one.
+    Article nextArticle() {
+        long id = nextId++;
+        Article article = new Article();
+        article.setLink("https://news.example.com/articleshow/" + id + ".cms");
+        article.setTitle(words(6 + random.nextInt(7)));
+        article.setDescription("<p>" + words(25 + random.nextInt(20)) + "</p>");
+        article.setCategory(CATEGORIES[(int) (id % CATEGORIES.length)]);
+        article.setPublishedAt(1_700_000_000_000L - id * 60_000L + random.nextInt(60_000));
+        return article;
+    }
+
+    List<Article> nextArticles(int count) {
+        List<Article> articles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            articles.add(nextArticle());
+        }
+        return articles;
+    }
+
+    // A word as likely to appear in a query as in the text.
+    String word() {
+        return VOCABULARY[zipfIndex()];
+    }
+
+    int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    private String words(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append(word());
+        }
+        return text.toString();
+    }
+
+    // Index i is drawn with probability roughly proportional to 1 / (i + 1).
+    private int zipfIndex() {
+        double u = random.nextDouble();
+        return Math.min(VOCABULARY.length - 1, (int) Math.exp(u * Math.log(VOCABULARY.length + 1)) - 1);
+    }
+
+    private static String[] vocabulary(int size) {
+        Random random = new Random(42);
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(7);
+            for (int c = 0; c < length; c++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+}
@@ -0,0 +1,107 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DatabaseManager against a temporary SQLite file holding datasetSize articles. With
+ * cached=false the in-memory article and page caches are sized to zero, so every read
+ * goes to SQLite.
+ *
+ * insertBatch and insertOneByOne report the time per row, so their scores compare the
+ * batched insert with the single-row one directly (rows/sec = 1e6 / score).
+ *
+ *   mvn -P bench verify -Djmh.args="DatabaseBenchmark -p datasetSize=100000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseBenchmark {
+
+    @Param({"10000", "100000"})
+    public int datasetSize;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private static final int PAGE_SIZE = 50;
+    private static final int INSERT_BATCH = 100;
+
+    private Path dataDir;
+    private DatabaseManager db;
+    private BenchData data;
+    private List<Article> stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataDir = BenchData.useTemporaryDataDir("newscache-db-bench");
+        if (!cached) {
+            System.setProperty("cache.articleBytes", "0");
+            System.setProperty("cache.pageBytes", "0");
+        }
+        db = DatabaseManager.getInstance();
+        data = new BenchData(datasetSize);
+        stored = data.nextArticles(datasetSize);
+        db.addArticles(stored);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DatabaseManager.shutdown();
+        BenchData.deleteRecursively(dataDir);
+    }
+
+    // One ingest batch of new articles; the table grows by INSERT_BATCH rows per call.
+    @Benchmark
+    @OperationsPerInvocation(INSERT_BATCH)
+    public InsertResult insertBatch() {
+        return db.addArticles(data.nextArticles(INSERT_BATCH));
+    }
+
+    // The same rows through addArticle, each in its own transaction: the baseline for insertBatch.
+    @Benchmark
+    @OperationsPerInvocation(INSERT_BATCH)
+    public void insertOneByOne() {
+        for (Article article : data.nextArticles(INSERT_BATCH)) {
+            db.addArticle(article);
+        }
+    }
+
+    // The table as it first appears: the newest page of all articles.
+    @Benchmark
+    public List<Article> firstPage() {
+        return db.getArticlesPage(ArticleFilter.all(), null, PAGE_SIZE);
+    }
+
+    // Scrolling deep into one category: a page starting after a random stored article.
+    @Benchmark
+    public List<Article> categoryPageAtRandomDepth() {
+        Article after = stored.get(data.nextInt(stored.size()));
+        return db.getArticlesPage(ArticleFilter.category(after.getCategory()), after, PAGE_SIZE);
+    }
+
+    // Opening an article.
+    @Benchmark
+    public Article articleByLink() {
+        return db.getArticleByLink(stored.get(data.nextInt(stored.size())).getLink());
+    }
+}
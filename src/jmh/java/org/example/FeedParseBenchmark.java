@@ -0,0 +1,56 @@
+package org.example;
+
+import com.rometools.rome.io.FeedException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a downloaded feed into Articles, as RssFetcher.parse does, over the fixture
+ * feeds in src/jmh/resources/feeds: RSS 2.0 with 20, 100 and 500 items (the last with
+ * content:encoded bodies) and an Atom feed with 100 entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedParseBenchmark {
+
+    @Param({"rss-20.xml", "rss-100.xml", "rss-500.xml", "atom-100.xml"})
+    public String feed;
+
+    private byte[] body;
+    private String contentType;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (InputStream in = FeedParseBenchmark.class.getResourceAsStream("/feeds/" + feed)) {
+            if (in == null) {
+                throw new IOException("Missing fixture feeds/" + feed);
+            }
+            body = in.readAllBytes();
+        }
+        contentType = feed.startsWith("atom") ? "application/atom+xml; charset=utf-8" : "application/rss+xml; charset=utf-8";
+    }
+
+    @Benchmark
+    public List<Article> parse() throws IOException, FeedException {
+        return RssFetcher.toArticles("Benchmark", RssFetcher.readFeed(body, contentType));
+    }
+}
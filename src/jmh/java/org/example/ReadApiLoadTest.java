@@ -0,0 +1,101 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how many requests per second a running read API sustains. Each client thread
+ * requests the given paths in turn, over keep-alive connections, for the whole run; half
+ * the requests revalidate with the ETag they last saw, as a polling client would.
+ *
+ *   mvn -P bench test-compile
+ *   java -cp target/bench/test-classes org.example.ReadApiLoadTest http://127.0.0.1:7070 16 30 /api/articles /api/search?q=market
+ *
+ * Arguments: base URL, client threads, seconds, then the paths (default: every listing endpoint).
+ */
+public class ReadApiLoadTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        String base = args.length > 0 ? args[0] : "http://127.0.0.1:7070";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        List<String> paths = args.length > 3 ? Arrays.asList(args).subList(3, args.length)
+                : Arrays.asList("/api/categories", "/api/articles?limit=50", "/api/bookmarks", "/api/search?q=news");
+
+        LongAdder ok = new LongAdder();
+        LongAdder notModified = new LongAdder();
+        LongAdder errors = new LongAdder();
+        AtomicLong maxMicros = new AtomicLong();
+        LongAdder totalMicros = new LongAdder();
+
+        // A short warm-up so the JIT and the caches don't count against the first seconds.
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.min(5, seconds / 5 + 1));
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> clients = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread client = new Thread(() -> {
+                String[] etags = new String[paths.size()];
+                for (long i = offset; System.nanoTime() < end; i++) {
+                    int p = (int) (i % paths.size());
+                    boolean revalidate = (i / paths.size()) % 2 == 1;
+                    long start = System.nanoTime();
+                    try {
+                        HttpURLConnection conn = (HttpURLConnection) new URL(base + paths.get(p)).openConnection();
+                        if (revalidate && etags[p] != null) {
+                            conn.setRequestProperty("If-None-Match", etags[p]);
+                        }
+                        int status = conn.getResponseCode();
+                        etags[p] = conn.getHeaderField("ETag");
+                        // Read to the end so the connection can be reused.
+                        try (InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+                            if (in != null) {
+                                in.transferTo(OutputStream.nullOutputStream());
+                            }
+                        }
+                        if (start < warmupEnd) {
+                            continue;
+                        }
+                        if (status == 200) {
+                            ok.increment();
+                        } else if (status == 304) {
+                            notModified.increment();
+                        } else {
+                            errors.increment();
+                        }
+                    } catch (IOException e) {
+                        if (start >= warmupEnd) {
+                            errors.increment();
+                        }
+                        continue;
+                    }
+                    long micros = (System.nanoTime() - start) / 1000;
+                    totalMicros.add(micros);
+                    maxMicros.accumulateAndGet(micros, Math::max);
+                }
+            }, "load-" + t);
+            clients.add(client);
+            client.start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        long requests = ok.sum() + notModified.sum();
+        System.out.printf("%d clients, %d s: %d requests (%d OK, %d not modified, %d errors)%n",
+                threads, seconds, requests, ok.sum(), notModified.sum(), errors.sum());
+        System.out.printf("%.0f requests/s, mean latency %.2f ms, max %.1f ms%n",
+                requests / (double) seconds,
+                requests == 0 ? 0 : totalMicros.sum() / 1000.0 / requests,
+                maxMicros.get() / 1000.0);
+    }
+}
@@ -0,0 +1,97 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SearchManager against a temporary Lucene index holding datasetSize articles. The
+ * first-page result cache is turned off, so every search runs against the index.
+ *
+ *   mvn -P bench verify -Djmh.args="SearchBenchmark -p datasetSize=10000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"10000", "100000"})
+    public int datasetSize;
+
+    private static final int INDEX_BATCH = 100;
+    private static final long REFRESH_MS = 100;
+
+    private Path dataDir;
+    private SearchManager search;
+    private BenchData data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        dataDir = BenchData.useTemporaryDataDir("newscache-search-bench");
+        System.setProperty("search.cachedQueries", "0");
+        System.setProperty("index.refreshMs", Long.toString(REFRESH_MS));
+        search = SearchManager.getInstance();
+        data = new BenchData(datasetSize);
+        for (int indexed = 0; indexed < datasetSize; indexed += 10_000) {
+            search.indexArticles(data.nextArticles(Math.min(10_000, datasetSize - indexed)));
+        }
+        search.commitNow();
+        // Let the background refresh make everything searchable.
+        Thread.sleep(REFRESH_MS * 5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SearchManager.shutdown();
+        BenchData.deleteRecursively(dataDir);
+    }
+
+    // One ingest batch of new articles, including their title suggestions.
+    @Benchmark
+    public void indexBatch() {
+        search.indexArticles(data.nextArticles(INDEX_BATCH));
+    }
+
+    @Benchmark
+    public SearchPage searchRelevance() {
+        return search.search(new SearchQuery(data.word() + " " + data.word()));
+    }
+
+    @Benchmark
+    public SearchPage searchRecency() {
+        return search.search(new SearchQuery(data.word()).sortBy(SearchQuery.Sort.RECENCY));
+    }
+
+    // A search narrowed to one category and the most recent week, as the filters in the UI do.
+    @Benchmark
+    public SearchPage searchFiltered() {
+        long newest = 1_700_000_000_000L;
+        return search.search(new SearchQuery(data.word())
+                .category(BenchData.CATEGORIES[data.nextInt(BenchData.CATEGORIES.length)])
+                .publishedBetween(newest - TimeUnit.DAYS.toMillis(7), newest));
+    }
+
+    // Title completions for the first three letters of a word, as typed into the search field.
+    @Benchmark
+    public List<String> suggest() {
+        String word = data.word();
+        return search.suggest(word.substring(0, 3), 8);
+    }
+}
@@ -2,11 +2,15 @@ module org.example {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql;
+    requires java.management;
     requires com.rometools.rome;
     requires javafx.web;
+    requires jdk.httpserver;
 
     requires org.apache.lucene.core;
     requires org.apache.lucene.queryparser;
+    requires org.apache.lucene.suggest;
+    requires org.jsoup;
 
     opens org.example to javafx.fxml;
     exports org.example;
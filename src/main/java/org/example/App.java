@@ -15,12 +15,14 @@ import java.util.List;
 public class App extends Application {
 
     private static Scene scene;
+    private PrimaryController controller;
 
 
     @Override
     public void start(Stage stage) throws IOException {
         FXMLLoader fxmlLoader = new FXMLLoader(App.class.getResource("primary.fxml"));
         Scene scene = new Scene(fxmlLoader.load(), 1280, 720);
+        controller = fxmlLoader.getController();
 
         // --- ADD THIS LINE ---
         scene.getStylesheets().add(App.class.getResource("style.css").toExternalForm());
@@ -30,6 +32,19 @@ public class App extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        // Let background polls finish storing what they fetched.
+        if (controller != null) {
+            controller.stop();
+        }
+        // Save when cached images were last shown, commit the search index, then release the
+        // database connections so SQLite can checkpoint its WAL file.
+        ImageCache.shutdown();
+        SearchManager.shutdown();
+        DatabaseManager.shutdown();
+    }
+
     static void setRoot(String fxml) throws IOException {
         scene.setRoot(loadFXML(fxml));
     }
@@ -0,0 +1,84 @@
+package org.example;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Tuning knobs for the application, read from newscache.properties on the classpath.
+ * Any key can be overridden on the command line with -Dkey=value.
+ */
+public class AppSettings {
+
+    private static AppSettings instance;
+
+    private final Properties properties = new Properties();
+
+    private AppSettings() {
+        try (InputStream input = AppSettings.class.getClassLoader().getResourceAsStream("newscache.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading newscache.properties: " + e.getMessage());
+        }
+    }
+
+    public static synchronized AppSettings getInstance() {
+        if (instance == null) {
+            instance = new AppSettings();
+        }
+        return instance;
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            double parsed = Double.parseDouble(value);
+            if (Double.isFinite(parsed)) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        System.err.println("Ignoring invalid value for " + key + ": " + value);
+        return defaultValue;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    // A file or directory in the data directory (data.dir, or the working directory), where
+    // NewsCache.db and the search indexes live.
+    public Path dataPath(String name) {
+        return Paths.get(getString("data.dir", ".")).resolve(name);
+    }
+}
@@ -1,14 +1,17 @@
 package org.example;
 
+import java.util.Date;
+
 public class Article {
 
     private String title;
     private String link; // This will be our unique identifier
     private String description;
     private String content; // Can be used for full text later
-    private String pubDate;
+    private long publishedAt; // Epoch millis, or 0 when the feed didn't say
     private String category;
     private boolean isBookmarked;
+    private long seq; // Insertion order in the database; only filled in where it's needed
 
     // --- Getters and Setters ---
     // These methods allow us to access and modify the private fields.
@@ -45,12 +48,17 @@ public class Article {
         this.content = content;
     }
 
+    // The publication time as shown in the table; empty when it is unknown.
     public String getPubDate() {
-        return pubDate;
+        return publishedAt == 0 ? "" : new Date(publishedAt).toString();
+    }
+
+    public long getPublishedAt() {
+        return publishedAt;
     }
 
-    public void setPubDate(String pubDate) {
-        this.pubDate = pubDate;
+    public void setPublishedAt(long publishedAt) {
+        this.publishedAt = publishedAt;
     }
 
     public String getCategory() {
@@ -68,4 +76,12 @@ public class Article {
     public void setBookmarked(boolean bookmarked) {
         isBookmarked = bookmarked;
     }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
 }
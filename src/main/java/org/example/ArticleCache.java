@@ -0,0 +1,225 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps recently read articles and listing pages in memory in front of DatabaseManager, so
+ * clicking back and forth between categories or articles doesn't go to SQLite each time.
+ *
+ * Writes keep the cache exact rather than flushing it. A page is keyed by its filter, its
+ * keyset cursor and its size, so it covers a fixed (pubDate, link) range; a new article
+ * only drops the pages of matching listings whose range it falls in. A bookmark toggle
+ * updates the flag on every cached copy of the article in place and drops just the
+ * Bookmarked page that gains or loses a row.
+ *
+ * Loads race with writes, so each load is stamped with the version it started at and is
+ * only cached if no write has happened since. The check and the put happen under the same
+ * lock as a write's version bump and invalidation, so a write can't slip in between them.
+ *
+ * Cached articles are never handed out or changed in place: callers get copies, and a
+ * bookmark toggle replaces the cached copies with updated ones. The UI is free to change
+ * the articles it shows while a writer thread updates the cache.
+ */
+public class ArticleCache {
+
+    // Listing pages, keyed by what was asked for.
+    private static final class PageKey {
+        final ArticleFilter filter;
+        final long afterPublishedAt;
+        final String afterLink;
+        final int limit;
+
+        PageKey(ArticleFilter filter, Article after, int limit) {
+            this.filter = filter;
+            this.afterPublishedAt = after == null ? 0 : after.getPublishedAt();
+            this.afterLink = after == null ? null : after.getLink();
+            this.limit = limit;
+        }
+
+        // Whether an article with this position would be a row of the page.
+        boolean covers(Article article, List<Article> rows) {
+            if (afterLink != null && compare(article.getPublishedAt(), article.getLink(), afterPublishedAt, afterLink) >= 0) {
+                return false; // belongs on an earlier page
+            }
+            if (rows.size() < limit) {
+                return true; // the last page runs to the end of the listing
+            }
+            Article last = rows.get(rows.size() - 1);
+            return compare(article.getPublishedAt(), article.getLink(), last.getPublishedAt(), last.getLink()) > 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) o;
+            return afterPublishedAt == other.afterPublishedAt && limit == other.limit
+                    && filter.equals(other.filter) && Objects.equals(afterLink, other.afterLink);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(filter, afterPublishedAt, afterLink, limit);
+        }
+    }
+
+    private final LruCache<String, Article> articles;
+    private final LruCache<PageKey, List<Article>> pages;
+    // Bumped by every write that touches cached data, under this cache's lock.
+    private final AtomicLong version = new AtomicLong();
+
+    public ArticleCache(long articleBytes, long pageBytes) {
+        articles = new LruCache<>("Article", articleBytes, ArticleCache::estimateBytes);
+        pages = new LruCache<>("Page", pageBytes, rows -> {
+            long bytes = 64;
+            for (Article article : rows) {
+                bytes += estimateBytes(article);
+            }
+            return bytes;
+        });
+        Metrics.getInstance().registerCache(articles);
+        Metrics.getInstance().registerCache(pages);
+    }
+
+    // Rough heap footprint of an article: object overhead plus two bytes per character.
+    static long estimateBytes(Article article) {
+        return 96 + 2L * (length(article.getLink()) + length(article.getTitle()) + length(article.getDescription())
+                + length(article.getCategory()) + length(article.getContent()));
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    private static Article copyOf(Article article) {
+        Article copy = new Article();
+        copy.setTitle(article.getTitle());
+        copy.setLink(article.getLink());
+        copy.setDescription(article.getDescription());
+        copy.setContent(article.getContent());
+        copy.setPublishedAt(article.getPublishedAt());
+        copy.setCategory(article.getCategory());
+        copy.setBookmarked(article.isBookmarked());
+        copy.setSeq(article.getSeq());
+        return copy;
+    }
+
+    private static List<Article> copyOf(List<Article> rows) {
+        List<Article> copy = new ArrayList<>(rows.size());
+        for (Article row : rows) {
+            copy.add(copyOf(row));
+        }
+        return copy;
+    }
+
+    // Orders articles the way the listings do: by pubDate, then by link.
+    private static int compare(long publishedAt, String link, long otherPublishedAt, String otherLink) {
+        int byDate = Long.compare(publishedAt, otherPublishedAt);
+        return byDate != 0 ? byDate : link.compareTo(otherLink);
+    }
+
+    // Read this before loading from the database and pass it to the matching put.
+    public long version() {
+        return version.get();
+    }
+
+    // A copy of the cached article; null on a miss.
+    public Article getArticle(String link) {
+        Article article = articles.get(link);
+        return article == null ? null : copyOf(article);
+    }
+
+    public synchronized void putArticle(Article article, long loadedAtVersion) {
+        if (article != null && version.get() == loadedAtVersion) {
+            articles.put(article.getLink(), copyOf(article));
+        }
+    }
+
+    // A copy of the cached page and its rows, so the caller may change them freely; null on a miss.
+    public List<Article> getPage(ArticleFilter filter, Article after, int limit) {
+        List<Article> rows = pages.get(new PageKey(filter, after, limit));
+        return rows == null ? null : copyOf(rows);
+    }
+
+    public synchronized void putPage(ArticleFilter filter, Article after, int limit, List<Article> rows,
+                                     long loadedAtVersion) {
+        if (version.get() == loadedAtVersion) {
+            pages.put(new PageKey(filter, after, limit), copyOf(rows));
+        }
+    }
+
+    // Drops the pages that the newly inserted articles would appear on.
+    public synchronized void articlesInserted(Collection<Article> inserted) {
+        if (inserted.isEmpty()) {
+            return;
+        }
+        version.incrementAndGet();
+        pages.removeIf((key, rows) -> {
+            for (Article article : inserted) {
+                if (key.filter.matches(article) && key.covers(article, rows)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Brings cached copies of the article in line with its new bookmark state, and drops
+     * the Bookmarked page it now joins or leaves.
+     */
+    public synchronized void bookmarkChanged(String link, boolean isBookmarked) {
+        version.incrementAndGet();
+        Article position = articles.peek(link);
+        if (position != null) {
+            Article updated = copyOf(position);
+            updated.setBookmarked(isBookmarked);
+            articles.put(link, updated);
+        }
+        Article[] found = {position};
+        pages.replaceAll((key, rows) -> {
+            List<Article> updated = null;
+            for (int i = 0; i < rows.size(); i++) {
+                if (rows.get(i).getLink().equals(link)) {
+                    if (updated == null) {
+                        updated = new ArrayList<>(rows);
+                    }
+                    Article row = copyOf(rows.get(i));
+                    row.setBookmarked(isBookmarked);
+                    updated.set(i, row);
+                    found[0] = row;
+                }
+            }
+            return updated == null ? rows : updated;
+        });
+        Article changed = found[0];
+        pages.removeIf((key, rows) -> key.filter.isBookmarkedOnly()
+                // Without the article's position we can't tell which page it belongs on.
+                && (changed == null || key.covers(changed, rows)));
+    }
+
+    // Forgets the given articles, e.g. after they have been deleted.
+    public synchronized void articlesRemoved(Collection<String> links) {
+        version.incrementAndGet();
+        for (String link : links) {
+            articles.remove(link);
+        }
+        pages.removeIf((key, rows) -> rows.stream().anyMatch(row -> links.contains(row.getLink())));
+    }
+
+    public synchronized void clear() {
+        version.incrementAndGet();
+        articles.clear();
+        pages.clear();
+    }
+
+    @Override
+    public String toString() {
+        return articles + "; " + pages;
+    }
+}
@@ -0,0 +1,336 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drops articles the ingest pipeline has no need to write, before they reach the database
+ * or the index.
+ *
+ * Links already stored are recognised by a compact set of 64-bit link hashes (about 16
+ * bytes per article), rebuilt from the database at startup; a refresh that finds nothing
+ * new then does no database or index work for its articles at all.
+ *
+ * Syndicated stories that turn up in several categories under different URLs are caught
+ * by a 64-bit SimHash of the title and text: near-identical wording gives fingerprints
+ * that differ in only a few bits. Only recently published articles are kept for this
+ * comparison, since copies of a story appear within hours or days of each other. A
+ * near-duplicate is recorded as an alias of the first copy instead of being stored again.
+ *
+ * Used from the pipeline's single database-writer thread; the methods are synchronized
+ * only so that a second pipeline run can't interleave with the first.
+ */
+public class ArticleDeduplicator {
+
+    private static ArticleDeduplicator instance;
+
+    // The outcome of filtering a batch.
+    public static class Result {
+        private final List<Article> fresh = new ArrayList<>();
+        private final Map<Article, String> duplicates = new LinkedHashMap<>();
+        // Fingerprints of the fresh articles, remembered by markStored() once they are stored.
+        private final List<Fingerprint> pending = new ArrayList<>();
+        private int known;
+
+        // Articles to store.
+        public List<Article> getFresh() {
+            return fresh;
+        }
+
+        // Near-duplicates, each mapped to the link of the stored article it copies.
+        public Map<Article, String> getDuplicates() {
+            return duplicates;
+        }
+
+        // Articles dropped because their link is already stored.
+        public int getKnownCount() {
+            return known;
+        }
+    }
+
+    // A recently published article, remembered for near-duplicate checks.
+    private static class Fingerprint {
+        final long simHash;
+        final String link;
+        final String category;
+        final long publishedAt;
+
+        Fingerprint(long simHash, String link, String category, long publishedAt) {
+            this.simHash = simHash;
+            this.link = link;
+            this.category = category;
+            this.publishedAt = publishedAt;
+        }
+    }
+
+    private final DatabaseManager dbManager;
+    private final LongSet seenLinks = new LongSet();
+    // Each fingerprint is filed under its four 16-bit blocks. Two fingerprints at most three
+    // bits apart must agree exactly on at least one block, so only those buckets are searched.
+    private final Map<Integer, List<Fingerprint>> buckets = new HashMap<>();
+    // Fingerprints oldest first by pubDate, so expired ones are always at the head. Feeds
+    // don't arrive in pubDate order, so the order they were added in wouldn't do.
+    private final PriorityQueue<Fingerprint> window =
+            new PriorityQueue<>(Comparator.comparingLong((Fingerprint f) -> f.publishedAt));
+    private final int maxDistance;
+    private final int minTokens;
+    private final long windowMillis;
+
+    private ArticleDeduplicator(DatabaseManager dbManager) {
+        AppSettings settings = AppSettings.getInstance();
+        this.dbManager = dbManager;
+        this.maxDistance = Math.min(3, Math.max(0, settings.getInt("dedup.maxDistance", 3)));
+        this.minTokens = Math.max(1, settings.getInt("dedup.minTokens", 8));
+        this.windowMillis = TimeUnit.HOURS.toMillis(Math.max(1, settings.getLong("dedup.windowHours", 72)));
+        rebuild();
+    }
+
+    public static synchronized ArticleDeduplicator getInstance() {
+        if (instance == null) {
+            instance = new ArticleDeduplicator(DatabaseManager.getInstance());
+        }
+        return instance;
+    }
+
+    // Loads every stored link, and the fingerprints of recent articles, from the database.
+    private void rebuild() {
+        long start = System.nanoTime();
+        dbManager.forEachKnownLink(link -> seenLinks.add(hash64(link)));
+        long since = System.currentTimeMillis() - windowMillis;
+        for (Article article : dbManager.getArticlesPublishedSince(since)) {
+            long simHash = simHash(article);
+            if (simHash != 0) {
+                remember(new Fingerprint(simHash, article.getLink(), article.getCategory(), article.getPublishedAt()));
+            }
+        }
+        System.out.println("Dedup: " + seenLinks.size() + " known links, " + window.size()
+                + " recent fingerprints loaded in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /**
+     * Splits a batch into articles worth storing, links that are already stored, and
+     * near-duplicates of articles stored recently in another category. Articles kept in
+     * the batch also count against later ones, so two feeds carrying the same story in
+     * one refresh store it once. Their fingerprints only count against later batches once
+     * markStored() reports them stored.
+     */
+    public synchronized Result filter(Collection<Article> batch) {
+        Result result = new Result();
+        long now = System.currentTimeMillis();
+        expire(now - windowMillis);
+        LongSet batchLinks = new LongSet();
+        for (Article article : batch) {
+            if (article.getLink() == null) {
+                continue;
+            }
+            long linkHash = hash64(article.getLink());
+            if (seenLinks.contains(linkHash) || !batchLinks.add(linkHash)) {
+                result.known++;
+                continue;
+            }
+            long simHash = simHash(article);
+            if (simHash != 0) {
+                Fingerprint original = findNearDuplicate(simHash, article.getCategory());
+                if (original == null) {
+                    original = findNearDuplicate(simHash, article.getCategory(), result.pending);
+                }
+                if (original != null) {
+                    result.duplicates.put(article, original.link);
+                    continue;
+                }
+                long publishedAt = article.getPublishedAt() > 0 ? article.getPublishedAt() : now;
+                result.pending.add(new Fingerprint(simHash, article.getLink(), article.getCategory(), publishedAt));
+            }
+            result.fresh.add(article);
+        }
+        return result;
+    }
+
+    // Marks links as stored, once the database has them.
+    public synchronized void markStored(Collection<String> links) {
+        for (String link : links) {
+            seenLinks.add(hash64(link));
+        }
+    }
+
+    /**
+     * Marks the fresh articles of a filtered batch that were actually inserted as stored,
+     * and remembers their fingerprints. Those of articles that weren't stored are dropped,
+     * so no later copy becomes an alias of a link missing from the database.
+     */
+    public synchronized void markStored(Result result, Collection<String> insertedLinks) {
+        markStored(insertedLinks);
+        Set<String> inserted = new HashSet<>(insertedLinks);
+        for (Fingerprint fingerprint : result.pending) {
+            if (inserted.contains(fingerprint.link)) {
+                remember(fingerprint);
+            }
+        }
+    }
+
+    private Fingerprint findNearDuplicate(long simHash, String category) {
+        for (int block = 0; block < 4; block++) {
+            List<Fingerprint> bucket = buckets.get(bucketKey(simHash, block));
+            Fingerprint found = bucket == null ? null : findNearDuplicate(simHash, category, bucket);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private Fingerprint findNearDuplicate(long simHash, String category, List<Fingerprint> candidates) {
+        for (Fingerprint candidate : candidates) {
+            if (!Objects.equals(candidate.category, category)
+                    && Long.bitCount(candidate.simHash ^ simHash) <= maxDistance) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void remember(Fingerprint fingerprint) {
+        window.add(fingerprint);
+        for (int block = 0; block < 4; block++) {
+            buckets.computeIfAbsent(bucketKey(fingerprint.simHash, block), key -> new ArrayList<>(2)).add(fingerprint);
+        }
+    }
+
+    // Forgets fingerprints of articles published before the cutoff.
+    private void expire(long cutoff) {
+        while (!window.isEmpty() && window.peek().publishedAt < cutoff) {
+            Fingerprint old = window.poll();
+            for (int block = 0; block < 4; block++) {
+                int key = bucketKey(old.simHash, block);
+                List<Fingerprint> bucket = buckets.get(key);
+                if (bucket != null) {
+                    bucket.remove(old);
+                    if (bucket.isEmpty()) {
+                        buckets.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int bucketKey(long simHash, int block) {
+        return (block << 16) | (int) ((simHash >>> (block * 16)) & 0xFFFF);
+    }
+
+    /**
+     * 64-bit SimHash of the words in the title and description (HTML tags removed). Each
+     * word votes on every bit by its hash; the fingerprint keeps the majority. Returns 0
+     * for text too short to fingerprint reliably.
+     */
+    long simHash(Article article) {
+        String text = Objects.toString(article.getTitle(), "") + " "
+                + Objects.toString(article.getDescription(), "").replaceAll("<[^>]*>", " ");
+        int[] votes = new int[64];
+        int tokens = 0;
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+                continue;
+            }
+            if (word.length() > 1) {
+                long h = hash64(word);
+                for (int bit = 0; bit < 64; bit++) {
+                    votes[bit] += ((h >>> bit) & 1) != 0 ? 1 : -1;
+                }
+                tokens++;
+            }
+            word.setLength(0);
+        }
+        if (tokens < minTokens) {
+            return 0;
+        }
+        long simHash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) {
+                simHash |= 1L << bit;
+            }
+        }
+        return simHash;
+    }
+
+    // FNV-1a over the characters, then a final mix so that every input bit affects every output bit.
+    static long hash64(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * An open-addressing set of longs. Far smaller than a HashSet of link strings: one long
+     * per slot, at most half full. Zero marks an empty slot, so a zero hash is stored as one.
+     */
+    private static class LongSet {
+        private long[] slots = new long[1024];
+        private int size;
+
+        boolean contains(long value) {
+            value = value == 0 ? 1 : value;
+            int mask = slots.length - 1;
+            for (int i = (int) value & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (slots[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Returns false if the value was already present.
+        boolean add(long value) {
+            value = value == 0 ? 1 : value;
+            if ((size + 1) * 2 > slots.length) {
+                grow();
+            }
+            int mask = slots.length - 1;
+            int i = (int) value & mask;
+            while (slots[i] != 0) {
+                if (slots[i] == value) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            slots[i] = value;
+            size++;
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            size = 0;
+            for (long value : old) {
+                if (value != 0) {
+                    add(value);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.example;
+
+import java.util.Objects;
+
+/**
+ * Which articles a listing shows: everything, only bookmarks, or one category.
+ * Each filter maps onto one of the (…, pubDate, link) indexes in DatabaseManager.
+ */
+public class ArticleFilter {
+
+    private static final ArticleFilter ALL = new ArticleFilter(null, false);
+    private static final ArticleFilter BOOKMARKED = new ArticleFilter(null, true);
+
+    private final String category;
+    private final boolean bookmarkedOnly;
+
+    private ArticleFilter(String category, boolean bookmarkedOnly) {
+        this.category = category;
+        this.bookmarkedOnly = bookmarkedOnly;
+    }
+
+    public static ArticleFilter all() {
+        return ALL;
+    }
+
+    public static ArticleFilter bookmarked() {
+        return BOOKMARKED;
+    }
+
+    public static ArticleFilter category(String category) {
+        return new ArticleFilter(category, false);
+    }
+
+    // Null unless this filter is for a single category.
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean isBookmarkedOnly() {
+        return bookmarkedOnly;
+    }
+
+    // Whether an article belongs in this listing.
+    public boolean matches(Article article) {
+        if (bookmarkedOnly) {
+            return article.isBookmarked();
+        }
+        return category == null || category.equals(article.getCategory());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ArticleFilter)) {
+            return false;
+        }
+        ArticleFilter other = (ArticleFilter) o;
+        return bookmarkedOnly == other.bookmarkedOnly && Objects.equals(category, other.category);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(category, bookmarkedOnly);
+    }
+
+    @Override
+    public String toString() {
+        return bookmarkedOnly ? "Bookmarked" : category == null ? "All Articles" : category;
+    }
+}
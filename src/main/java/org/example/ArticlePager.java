@@ -0,0 +1,146 @@
+package org.example;
+
+import javafx.application.Platform;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Feeds a TableView one page of articles at a time. The first page is loaded when a
+ * filter is shown; further pages are fetched in the background as rows near the end of
+ * the list scroll into view. Only the pages the user has actually scrolled through are
+ * ever held in memory. Newly stored articles are merged into the rows already shown,
+ * rather than reloading the listing.
+ *
+ * All methods must be called on the JavaFX Application Thread.
+ */
+public class ArticlePager {
+
+    // Start loading the next page when a row this close to the end is shown.
+    private static final int PREFETCH_ROWS = 50;
+
+    // The order of every listing: ORDER BY pubDate DESC, link DESC.
+    private static final Comparator<Article> NEWEST_FIRST = Comparator.comparingLong(Article::getPublishedAt)
+            .thenComparing(Article::getLink).reversed();
+
+    private final TableView<Article> tableView;
+    private final int pageSize;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(RssFetcher.daemonThreads("article-pager"));
+
+    // Bumped whenever the listing changes, so pages still loading for an old one are dropped.
+    private long generation;
+    private ArticleFilter filter;
+    private boolean loading;
+    private boolean exhausted;
+
+    public ArticlePager(TableView<Article> tableView, int pageSize) {
+        this.tableView = tableView;
+        this.pageSize = pageSize;
+        tableView.setRowFactory(view -> new TableRow<Article>() {
+            @Override
+            public void updateIndex(int index) {
+                super.updateIndex(index);
+                if (index >= 0 && index >= tableView.getItems().size() - PREFETCH_ROWS) {
+                    loadNextPage();
+                }
+            }
+        });
+    }
+
+    // Replaces the table's contents with the first page of the given listing.
+    public void show(ArticleFilter filter) {
+        generation++;
+        this.filter = filter;
+        this.loading = false;
+        this.exhausted = false;
+        tableView.getItems().clear();
+        loadNextPage();
+    }
+
+    // Stops paging, e.g. while the table shows search results instead of a listing.
+    public void detach() {
+        generation++;
+        filter = null;
+    }
+
+    public ArticleFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Inserts the newly stored articles that belong in the listing at their sorted
+     * position, leaving the rest of the table, its selection and scroll position alone.
+     * Articles that sort after the last loaded row are left to the page that loads them
+     * when the user scrolls that far. Returns how many rows were inserted.
+     */
+    public int insert(Collection<Article> stored) {
+        if (filter == null) {
+            return 0;
+        }
+        List<Article> added = new ArrayList<>();
+        for (Article article : stored) {
+            if (filter.matches(article)) {
+                added.add(article);
+            }
+        }
+        added.sort(NEWEST_FIRST);
+        List<Article> items = tableView.getItems();
+        int inserted = 0;
+        for (Article article : added) {
+            int index = Collections.binarySearch(items, article, NEWEST_FIRST);
+            if (index >= 0) {
+                continue; // Already shown.
+            }
+            index = -index - 1;
+            if (index == items.size() && !exhausted) {
+                continue;
+            }
+            items.add(index, article);
+            inserted++;
+        }
+        return inserted;
+    }
+
+    private void loadNextPage() {
+        if (filter == null || loading || exhausted) {
+            return;
+        }
+        loading = true;
+        long requestGeneration = generation;
+        ArticleFilter requestFilter = filter;
+        List<Article> items = tableView.getItems();
+        Article after = items.isEmpty() ? null : items.get(items.size() - 1);
+
+        loader.execute(() -> {
+            List<Article> page = null;
+            try {
+                page = DatabaseManager.getInstance().getArticlesPage(requestFilter, after, pageSize);
+            } catch (Throwable t) {
+                System.err.println("Error loading a page of articles: " + t);
+            } finally {
+                // Always clear the loading flag, or the table would never ask for another page.
+                List<Article> loaded = page;
+                Platform.runLater(() -> pageLoaded(requestGeneration, loaded));
+            }
+        });
+    }
+
+    // A null page failed to load; scrolling to the end of the table asks for it again.
+    private void pageLoaded(long requestGeneration, List<Article> page) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        loading = false;
+        if (page != null) {
+            exhausted = page.size() < pageSize;
+            tableView.getItems().addAll(page);
+        }
+    }
+}
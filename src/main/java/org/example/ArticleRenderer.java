@@ -0,0 +1,248 @@
+package org.example;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.safety.Cleaner;
+import org.jsoup.safety.Safelist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+
+/**
+ * Turns an article body into the complete HTML page the reader pane shows, once, and
+ * keeps the result. Preparing a page means:
+ *
+ *   - sanitizing the feed's HTML down to text, links, tables and images, which drops
+ *     scripts, styles, iframes, forms and event handlers;
+ *   - removing tracking pixels and feed "share" buttons, and utm_ parameters from links;
+ *   - pointing images at their copies in ImageCache, if there is one, and queueing the
+ *     rest for download; marking images to load lazily and decode off the main thread;
+ *   - wrapping it all in a page with the theme's CSS.
+ *
+ * Pages are cached by theme and link, bounded by their total length. prefetch() prepares
+ * the articles around the selection in the background, so moving through the table with
+ * the arrow keys finds them ready.
+ *
+ * Thread-safe; render() reads the database and belongs on a background thread.
+ */
+public class ArticleRenderer {
+
+    public enum Theme {
+        LIGHT("body { font-family: sans-serif; line-height: 1.45; margin: 12px; }"),
+        DARK("body { font-family: sans-serif; line-height: 1.45; margin: 12px; background-color: #2b2b2b; color: #e0e0e0; }"
+                + " a { color: #8ab4f8; }");
+
+        private final String css;
+
+        Theme(String css) {
+            this.css = css;
+        }
+    }
+
+    // Shared by both themes.
+    private static final String BASE_CSS = "img { max-width: 95%; height: auto; } pre { white-space: pre-wrap; }"
+            + " table { max-width: 100%; }";
+
+    private static final Safelist SAFELIST = Safelist.relaxed()
+            .addTags("figure", "figcaption", "hr")
+            .addAttributes("img", "loading", "decoding");
+
+    // Image hosts and paths that only count views.
+    private static final Pattern TRACKER = Pattern.compile(
+            "feeds\\.feedburner\\.com/~r/|/~ff/|feedsportal\\.com|doubleclick\\.net|pixel\\.wp\\.com|stats\\.wp\\.com"
+                    + "|google-analytics\\.com|googleadservices\\.com|/pixel(\\.gif|\\.png)?(\\?|$)", Pattern.CASE_INSENSITIVE);
+
+    private final LruCache<String, String> pages;
+    private final ImageCache images; // Null when images.enabled is false.
+    private final boolean remoteImages;
+    private final ExecutorService prefetcher;
+    // Bumped by every prefetch request, so neighbours of an earlier selection are skipped.
+    private final AtomicLong prefetchGeneration = new AtomicLong();
+    // Bumped by invalidate(), per link hash, so a page rendered from a body read before it isn't kept.
+    private final AtomicLongArray invalidations = new AtomicLongArray(64);
+    private final LatencyHistogram prepareTimer = Metrics.getInstance().timer("render.prepare");
+
+    public ArticleRenderer(long maxChars, ImageCache images) {
+        this.images = images;
+        // Without it, images not in the cache yet are left out rather than fetched by the WebView.
+        this.remoteImages = images == null || AppSettings.getInstance().getBoolean("images.remoteFallback", true);
+        pages = new LruCache<>("Rendered article", maxChars, String::length);
+        Metrics.getInstance().registerCache(pages);
+        ThreadFactory threads = RssFetcher.daemonThreads("render-prefetch");
+        prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = threads.newThread(runnable);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    // The prepared page, or null if it isn't ready. Never touches the database, so it is safe on the FX thread.
+    public String getCached(String link, Theme theme) {
+        return pages.get(key(link, theme));
+    }
+
+    // The prepared page, preparing it now on a miss. Never null.
+    public String render(String link, Theme theme) {
+        String page = pages.peek(key(link, theme));
+        if (page == null) {
+            page = prepare(link, theme);
+        }
+        return page;
+    }
+
+    // Prepares the given articles in the background, in order, unless prefetch is called again first.
+    public void prefetch(List<String> links, Theme theme) {
+        long request = prefetchGeneration.incrementAndGet();
+        prefetcher.execute(() -> {
+            for (String link : links) {
+                if (request != prefetchGeneration.get()) {
+                    return;
+                }
+                if (pages.peek(key(link, theme)) == null) {
+                    prepare(link, theme);
+                }
+            }
+        });
+    }
+
+    // Forgets the article's pages, e.g. once its full text or its images have arrived.
+    public void invalidate(String link) {
+        invalidations.incrementAndGet(slot(link));
+        for (Theme theme : Theme.values()) {
+            pages.remove(key(link, theme));
+        }
+    }
+
+    // Forgets every page that shows one of the given image file: URLs, e.g. once ImageCache has deleted them.
+    public void invalidateImages(Set<String> fileUrls) {
+        // Pages being rendered right now may have looked the images up already.
+        for (int i = 0; i < invalidations.length(); i++) {
+            invalidations.incrementAndGet(i);
+        }
+        pages.removeIf((key, page) -> {
+            for (String url : fileUrls) {
+                if (page.contains(url)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    public void shutdown() {
+        prefetcher.shutdownNow();
+    }
+
+    // A page with nothing on it yet, in the theme's colours.
+    public static String emptyPage(Theme theme) {
+        return toPage("", "", theme, null, true);
+    }
+
+    private static String key(String link, Theme theme) {
+        return theme.name() + ' ' + link;
+    }
+
+    private int slot(String link) {
+        return (link.hashCode() & Integer.MAX_VALUE) % invalidations.length();
+    }
+
+    private String prepare(String link, Theme theme) {
+        long generation = invalidations.get(slot(link));
+        String body = DatabaseManager.getInstance().getArticleBody(link);
+        long start = System.nanoTime();
+        String page = toPage(body == null ? "" : body, link, theme, images, remoteImages);
+        prepareTimer.recordSince(start);
+        if (body != null && generation == invalidations.get(slot(link))) {
+            pages.put(key(link, theme), page);
+            // An invalidate() between the check and the put may have removed nothing.
+            if (generation != invalidations.get(slot(link))) {
+                pages.remove(key(link, theme));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * The complete page for a body, with links and images resolved against the article's
+     * link. Images found in the image cache are shown from disk; the others are queued for
+     * download and, if remoteImages, shown from their remote URL meanwhile.
+     */
+    static String toPage(String body, String baseUri, Theme theme, ImageCache images, boolean remoteImages) {
+        Document clean = new Cleaner(SAFELIST).clean(Jsoup.parseBodyFragment(body, baseUri));
+        List<String> uncached = new ArrayList<>();
+        for (Element img : clean.select("img")) {
+            if (isTracker(img)) {
+                img.remove();
+                continue;
+            }
+            String src = img.absUrl("src");
+            String local = images == null ? null : images.localUrl(src);
+            if (local != null) {
+                img.attr("src", local);
+            } else if (images != null && src.startsWith("http")) {
+                uncached.add(src);
+                if (!remoteImages) {
+                    img.remove();
+                    continue;
+                }
+            }
+            img.attr("loading", "lazy").attr("decoding", "async");
+        }
+        if (!uncached.isEmpty()) {
+            images.cacheImages(baseUri, uncached);
+        }
+        for (Element a : clean.select("a[href]")) {
+            String href = a.attr("href");
+            if (href.contains("/~ff/")) {
+                a.remove(); // FeedBurner "flare": share and email buttons
+            } else if (href.contains("utm_")) {
+                a.attr("href", withoutUtmParameters(href));
+            }
+        }
+        // Share buttons whose images were removed above leave empty links behind.
+        for (Element a : clean.select("a")) {
+            if (a.children().isEmpty() && a.text().isBlank()) {
+                a.remove();
+            }
+        }
+        clean.outputSettings().prettyPrint(false);
+        return "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><style>" + BASE_CSS + " " + theme.css
+                + "</style></head><body>" + clean.body().html() + "</body></html>";
+    }
+
+    static String withoutUtmParameters(String href) {
+        int query = href.indexOf('?');
+        if (query < 0) {
+            return href;
+        }
+        int hash = href.indexOf('#', query);
+        String fragment = hash < 0 ? "" : href.substring(hash);
+        StringBuilder kept = new StringBuilder(href.substring(0, query));
+        char separator = '?';
+        for (String param : href.substring(query + 1, hash < 0 ? href.length() : hash).split("&")) {
+            if (!param.isEmpty() && !param.regionMatches(true, 0, "utm_", 0, 4)) {
+                kept.append(separator).append(param);
+                separator = '&';
+            }
+        }
+        return kept + fragment;
+    }
+
+    // A 1x1 (or 0x0) image, or one served from a known tracking host.
+    static boolean isTracker(Element img) {
+        String width = img.attr("width").trim();
+        String height = img.attr("height").trim();
+        if (width.equals("1") || width.equals("0") || height.equals("1") || height.equals("0")) {
+            return true;
+        }
+        return TRACKER.matcher(img.attr("src")).find();
+    }
+}
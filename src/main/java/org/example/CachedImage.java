@@ -0,0 +1,42 @@
+package org.example;
+
+/**
+ * One image in ImageCache: the remote URL it was downloaded from, the file under the
+ * cache directory that holds its bytes (named after their SHA-256, so identical images
+ * share a file), and when it was last shown.
+ */
+public class CachedImage {
+
+    private final String url;
+    private final String file;
+    private final long size;
+    private volatile long lastUsed;
+
+    public CachedImage(String url, String file, long size, long lastUsed) {
+        this.url = url;
+        this.file = file;
+        this.size = size;
+        this.lastUsed = lastUsed;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    // Relative to the cache directory, e.g. "3f/3fa2...e1.jpg".
+    public String getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    public void setLastUsed(long lastUsed) {
+        this.lastUsed = lastUsed;
+    }
+}
@@ -0,0 +1,155 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Long-lived SQLite connections for DatabaseManager: one writer, shared by all writes in
+ * turn, and a small pool of read-only readers. In WAL mode the readers keep working while
+ * the writer is busy, so background ingestion doesn't stall the UI.
+ *
+ * Each connection caches its prepared statements, so a query is only compiled the first
+ * time it runs on that connection.
+ */
+public class ConnectionManager {
+
+    // Work to run on a pooled connection.
+    public interface SqlWork<T> {
+        T run(PooledConnection connection) throws SQLException;
+    }
+
+    /**
+     * A JDBC connection plus the statements prepared on it. Callers must not close the
+     * statements they get from prepare(); they are reused by the next caller.
+     */
+    public static class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement pstmt = statements.get(sql);
+            if (pstmt == null || pstmt.isClosed()) {
+                pstmt = connection.prepareStatement(sql);
+                statements.put(sql, pstmt);
+            } else {
+                pstmt.clearParameters();
+            }
+            return pstmt;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        void close() {
+            for (PreparedStatement pstmt : statements.values()) {
+                try {
+                    pstmt.close();
+                } catch (SQLException ignored) {
+                    // Closing the connection below releases it anyway.
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing database connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private final String url;
+    private final PooledConnection writer;
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final BlockingQueue<PooledConnection> readers;
+    private final List<PooledConnection> allReaders = new ArrayList<>();
+
+    public ConnectionManager(String url) throws SQLException {
+        this.url = url;
+        AppSettings settings = AppSettings.getInstance();
+        this.writer = new PooledConnection(open(false));
+        int readerCount = Math.max(1, settings.getInt("db.readers", 4));
+        this.readers = new ArrayBlockingQueue<>(readerCount);
+        for (int i = 0; i < readerCount; i++) {
+            PooledConnection reader = new PooledConnection(open(true));
+            readers.add(reader);
+            allReaders.add(reader);
+        }
+    }
+
+    // Opens a connection and applies the tuning profile from newscache.properties.
+    private Connection open(boolean readOnly) throws SQLException {
+        AppSettings settings = AppSettings.getInstance();
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + settings.getInt("db.busyTimeoutMs", 5000));
+            // The journal mode is stored in the database file, so the writer sets it once for everyone.
+            if (!readOnly) {
+                stmt.execute("PRAGMA journal_mode = " + settings.getString("db.journalMode", "WAL"));
+            }
+            stmt.execute("PRAGMA synchronous = " + settings.getString("db.synchronous", "NORMAL"));
+            stmt.execute("PRAGMA cache_size = " + settings.getLong("db.cacheSize", -16000));
+            stmt.execute("PRAGMA mmap_size = " + settings.getLong("db.mmapSize", 268435456L));
+            stmt.execute("PRAGMA temp_store = MEMORY");
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = 1");
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    // Runs work on a reader connection, waiting for one to become free if needed.
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        PooledConnection reader;
+        try {
+            reader = readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            return work.run(reader);
+        } finally {
+            readers.add(reader);
+        }
+    }
+
+    // Runs work on the single writer connection; concurrent writers take turns.
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        writerLock.lock();
+        try {
+            return work.run(writer);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public void close() {
+        writerLock.lock();
+        try {
+            writer.close();
+        } finally {
+            writerLock.unlock();
+        }
+        for (PooledConnection reader : allReaders) {
+            reader.close();
+        }
+    }
+}
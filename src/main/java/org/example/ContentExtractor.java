@@ -0,0 +1,151 @@
+package org.example;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the main text of an article's web page, leaving out navigation, sidebars,
+ * comments and the like. A cut-down version of the Readability approach: every paragraph
+ * of some length scores points for its parent and half as many for its grandparent, and
+ * the element with the best score, discounted by how much of it is link text, is taken
+ * to be the article.
+ */
+public class ContentExtractor {
+
+    // Never part of the article text.
+    private static final String JUNK_TAGS = "script, style, noscript, template, nav, header, footer, aside, " +
+            "form, iframe, object, embed, svg, canvas, button, select, input, textarea";
+
+    // class or id values of page furniture, unless they also look like the article itself.
+    private static final Pattern UNLIKELY = Pattern.compile(
+            "comment|share|social|related|promo|sidebar|newsletter|subscribe|advert|sponsor|cookie|" +
+                    "banner|popup|modal|breadcrumb|menu|masthead|footer|header|\\bnav", Pattern.CASE_INSENSITIVE);
+    private static final Pattern MAYBE = Pattern.compile(
+            "article|body|content|main|story|post|entry|text", Pattern.CASE_INSENSITIVE);
+
+    // Paragraphs shorter than this are captions, bylines or buttons and don't count.
+    private static final int MIN_PARAGRAPH_CHARS = 25;
+
+    private final int minChars;
+
+    public ContentExtractor(int minChars) {
+        this.minChars = minChars;
+    }
+
+    /**
+     * Returns the article's text, paragraphs separated by blank lines, or null if the page
+     * has less than minChars of it (an index page, a paywall, a video).
+     */
+    public String extract(Document doc) {
+        Element body = doc.body();
+        if (body == null) {
+            return null;
+        }
+        body.select(JUNK_TAGS).remove();
+        List<Element> unlikely = new ArrayList<>();
+        for (Element element : body.getAllElements()) {
+            String names = element.className() + " " + element.id();
+            if (element != body && UNLIKELY.matcher(names).find() && !MAYBE.matcher(names).find()) {
+                unlikely.add(element);
+            }
+        }
+        for (Element element : unlikely) {
+            element.remove();
+        }
+
+        Element article = bestCandidate(body);
+        String text = collectText(article);
+        return text.length() < minChars ? null : text;
+    }
+
+    private static Element bestCandidate(Element body) {
+        Map<Element, Double> scores = new IdentityHashMap<>();
+        for (Element paragraph : body.select("p, pre, td, blockquote")) {
+            String text = paragraph.text();
+            if (text.length() < MIN_PARAGRAPH_CHARS) {
+                continue;
+            }
+            // Longer paragraphs and ones with more clauses are more likely prose.
+            double score = 1 + text.split(",").length + Math.min(text.length() / 100, 3);
+            Element parent = paragraph.parent();
+            if (parent != null) {
+                scores.merge(parent, score, Double::sum);
+                Element grandparent = parent.parent();
+                if (grandparent != null) {
+                    scores.merge(grandparent, score / 2, Double::sum);
+                }
+            }
+        }
+
+        Element best = null;
+        double bestScore = 0;
+        for (Map.Entry<Element, Double> candidate : scores.entrySet()) {
+            double score = candidate.getValue() * (1 - linkDensity(candidate.getKey()));
+            if (score > bestScore) {
+                best = candidate.getKey();
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        Element marked = body.selectFirst("article, main, [role=main]");
+        return marked != null ? marked : body;
+    }
+
+    // The share of the element's text that sits inside links.
+    private static double linkDensity(Element element) {
+        int length = element.text().length();
+        if (length == 0) {
+            return 0;
+        }
+        int linkLength = 0;
+        for (Element link : element.select("a")) {
+            linkLength += link.text().length();
+        }
+        return Math.min(1, (double) linkLength / length);
+    }
+
+    private static String collectText(Element article) {
+        Elements blocks = article.select("h1, h2, h3, h4, p, pre, li, blockquote");
+        Set<Element> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        StringBuilder text = new StringBuilder();
+        for (Element block : blocks) {
+            seen.add(block);
+            // A paragraph inside a quote or list item was already taken with it.
+            if (hasSeenAncestor(block, article, seen)) {
+                continue;
+            }
+            String blockText = block.tagName().equals("pre") ? block.wholeText().trim() : block.text();
+            if (blockText.isEmpty() || linkDensity(block) > 0.5) {
+                continue;
+            }
+            if (text.length() > 0) {
+                text.append("\n\n");
+            }
+            text.append(blockText);
+        }
+        if (text.length() == 0) {
+            text.append(article.text());
+        }
+        return text.toString();
+    }
+
+    private static boolean hasSeenAncestor(Element block, Element root, Set<Element> seen) {
+        for (Element parent = block.parent(); parent != null && parent != root; parent = parent.parent()) {
+            if (seen.contains(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,341 @@
+package org.example;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fetches the web page behind each recent article in the background, extracts its main
+ * text with ContentExtractor, and stores it compressed next to the article, so the reader
+ * pane can show the whole story and search can find words that were never in the feed.
+ *
+ * Politeness comes first: at most maxParallel pages are downloaded at once, only one at a
+ * time from any host, and a host is left alone for hostDelayMs after each request. Pages
+ * are taken newest article first, in batches; after each batch the search index catches
+ * up, which indexes the new text. Pages that can never be used (HTTP 4xx, not HTML, too
+ * little text) are recorded and not fetched again; network errors are only remembered
+ * until the next start.
+ */
+public class ContentFetcher {
+
+    private final DatabaseManager dbManager;
+    private final IndexSync indexSync;
+    private final Consumer<String> onStored;
+    private final ContentExtractor extractor;
+
+    private final int maxParallel;
+    private final long hostDelayMillis;
+    private final long maxAgeMillis;
+    private final int batchSize;
+    private final int maxBytes;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+    private final long idleMillis;
+
+    // Limits how many pages are being fetched at once.
+    private final Semaphore slots;
+    private final ExecutorService workers;
+    // When each host may be asked again; Long.MAX_VALUE while a request to it is in flight.
+    // Guarded by this.
+    private final Map<String, Long> hostFreeAt = new HashMap<>();
+    // Links that failed with a network error during this run.
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger storedInBatch = new AtomicInteger();
+
+    private final LatencyHistogram fetchTimer = Metrics.getInstance().timer("content.fetch");
+    private final LatencyHistogram extractTimer = Metrics.getInstance().timer("content.extract");
+
+    private Thread dispatcher;
+    private volatile boolean running;
+    private boolean nudged; // Guarded by this.
+
+    /**
+     * onStored is called with the link of every article whose text was stored, on the
+     * fetcher's threads.
+     */
+    public ContentFetcher(DatabaseManager dbManager, IndexSync indexSync, Consumer<String> onStored) {
+        AppSettings settings = AppSettings.getInstance();
+        this.dbManager = dbManager;
+        this.indexSync = indexSync;
+        this.onStored = onStored;
+        this.extractor = new ContentExtractor(Math.max(1, settings.getInt("content.minChars", 250)));
+        this.maxParallel = Math.max(1, settings.getInt("content.maxParallel", 4));
+        this.hostDelayMillis = Math.max(0, settings.getLong("content.hostDelayMs", 2000));
+        this.maxAgeMillis = TimeUnit.DAYS.toMillis(Math.max(1, settings.getLong("content.maxAgeDays", 7)));
+        this.batchSize = Math.max(1, settings.getInt("content.batchSize", 50));
+        this.maxBytes = Math.max(1024, settings.getInt("content.maxBytes", 2 << 20));
+        this.connectTimeoutMs = settings.getInt("content.connectTimeoutMs", 5000);
+        this.readTimeoutMs = settings.getInt("content.readTimeoutMs", 10000);
+        this.idleMillis = TimeUnit.SECONDS.toMillis(Math.max(1, settings.getLong("content.idleSeconds", 300)));
+        this.slots = new Semaphore(maxParallel);
+        this.workers = Executors.newFixedThreadPool(maxParallel, RssFetcher.daemonThreads("content-fetch"));
+    }
+
+    // Creates and starts a fetcher, or returns null if content.enabled is false.
+    public static ContentFetcher startIfEnabled(DatabaseManager dbManager, IndexSync indexSync, Consumer<String> onStored) {
+        if (!AppSettings.getInstance().getBoolean("content.enabled", true)) {
+            return null;
+        }
+        ContentFetcher fetcher = new ContentFetcher(dbManager, indexSync, onStored);
+        fetcher.start();
+        return fetcher;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        dispatcher = new Thread(this::dispatch, "content-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        System.out.println("Content fetcher started.");
+    }
+
+    // Stops taking new pages and waits for the ones being fetched to be stored.
+    public void stop() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            notifyAll();
+        }
+        dispatcher.interrupt();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(connectTimeoutMs + readTimeoutMs + 5000L, TimeUnit.MILLISECONDS)) {
+                System.err.println("Content fetcher: fetches still running; leaving them.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Content fetcher stopped.");
+    }
+
+    // Tells the fetcher that new articles were stored, so it needn't wait out its idle time.
+    public synchronized void nudge() {
+        nudged = true;
+        notifyAll();
+    }
+
+    private void dispatch() {
+        try {
+            while (running) {
+                List<String> batch = nextBatch();
+                if (batch.isEmpty()) {
+                    waitForWork();
+                    continue;
+                }
+                long start = System.nanoTime();
+                storedInBatch.set(0);
+                Deque<String> pending = new ArrayDeque<>(batch);
+                while (running && !pending.isEmpty()) {
+                    String link = takeReady(pending);
+                    if (link == null) {
+                        break;
+                    }
+                    slots.acquire();
+                    try {
+                        workers.execute(() -> {
+                            try {
+                                fetch(link);
+                            } finally {
+                                release(link);
+                                slots.release();
+                            }
+                        });
+                    } catch (RuntimeException e) {
+                        // Rejected because we are stopping.
+                        release(link);
+                        slots.release();
+                    }
+                }
+                // Let the batch finish before the index catches up with it.
+                slots.acquire(maxParallel);
+                slots.release(maxParallel);
+                int stored = storedInBatch.get();
+                if (stored > 0) {
+                    try {
+                        indexSync.catchUp(null);
+                    } catch (RuntimeException e) {
+                        // Left for the next catch-up, here or in the ingest pipeline.
+                        System.err.println("Error indexing fetched full text: " + e);
+                    }
+                }
+                System.out.println("Fetched the full text of " + stored + " of " + batch.size() + " articles in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The newest articles still without content, less those that already failed this run.
+    private List<String> nextBatch() {
+        long since = System.currentTimeMillis() - maxAgeMillis;
+        List<String> links = dbManager.getLinksNeedingContent(since, batchSize + failed.size());
+        links.removeIf(failed::contains);
+        return links.size() > batchSize ? new ArrayList<>(links.subList(0, batchSize)) : links;
+    }
+
+    private synchronized void waitForWork() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + idleMillis;
+        while (running && !nudged) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+        }
+        nudged = false;
+    }
+
+    /**
+     * Removes and returns the first pending link whose host may be asked now, marking the
+     * host busy, and waits if there is none. Returns null once the fetcher is stopping.
+     */
+    private synchronized String takeReady(Deque<String> pending) throws InterruptedException {
+        while (running) {
+            long now = System.currentTimeMillis();
+            long earliest = Long.MAX_VALUE;
+            for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+                String link = it.next();
+                String host = hostOf(link);
+                long freeAt = hostFreeAt.getOrDefault(host, 0L);
+                if (freeAt <= now) {
+                    it.remove();
+                    hostFreeAt.put(host, Long.MAX_VALUE);
+                    return link;
+                }
+                earliest = Math.min(earliest, freeAt);
+            }
+            // Every host is busy or resting; a finished fetch or the rest ending wakes us.
+            if (earliest == Long.MAX_VALUE) {
+                wait();
+            } else {
+                wait(Math.max(1, earliest - now));
+            }
+        }
+        return null;
+    }
+
+    private synchronized void release(String link) {
+        hostFreeAt.put(hostOf(link), System.currentTimeMillis() + hostDelayMillis);
+        notifyAll();
+    }
+
+    private static String hostOf(String link) {
+        try {
+            String host = new URL(link).getHost();
+            return host.toLowerCase(Locale.ROOT);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private void fetch(String link) {
+        long start = System.nanoTime();
+        HttpURLConnection httpcon = null;
+        try {
+            httpcon = (HttpURLConnection) new URL(link).openConnection();
+            httpcon.addRequestProperty("User-Agent", "Mozilla/5.0");
+            httpcon.addRequestProperty("Accept", "text/html,application/xhtml+xml");
+            httpcon.addRequestProperty("Accept-Encoding", "gzip");
+            httpcon.setConnectTimeout(connectTimeoutMs);
+            httpcon.setReadTimeout(readTimeoutMs);
+
+            int status = httpcon.getResponseCode();
+            // Gone, forbidden or behind a login: asking again won't help. 429 is only a "later".
+            if (status >= 400 && status < 500 && status != 429) {
+                dbManager.storeArticleContent(link, null, status);
+                return;
+            }
+            if (status >= 400) {
+                throw new IOException("HTTP " + status);
+            }
+            String contentType = httpcon.getContentType();
+            if (contentType != null && !contentType.toLowerCase(Locale.ROOT).contains("html")) {
+                dbManager.storeArticleContent(link, null, status);
+                return;
+            }
+            byte[] body = readBody(httpcon);
+            fetchTimer.recordSince(start);
+
+            long extractStart = System.nanoTime();
+            Document doc = Jsoup.parse(new ByteArrayInputStream(body), charsetOf(contentType), httpcon.getURL().toString());
+            String text = extractor.extract(doc);
+            extractTimer.recordSince(extractStart);
+
+            dbManager.storeArticleContent(link, text, status);
+            if (text != null) {
+                storedInBatch.incrementAndGet();
+                onStored.accept(link);
+            }
+        } catch (Exception e) {
+            failed.add(link);
+            System.err.println("Error fetching the page of " + link + ": " + e);
+        } finally {
+            if (httpcon != null) {
+                httpcon.disconnect();
+            }
+        }
+    }
+
+    // Reads at most maxBytes of the page; the article text is near the top of anything longer.
+    private byte[] readBody(HttpURLConnection httpcon) throws IOException {
+        try (InputStream raw = httpcon.getInputStream();
+             InputStream in = "gzip".equalsIgnoreCase(httpcon.getContentEncoding()) ? new GZIPInputStream(raw) : raw) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            byte[] buffer = new byte[16 * 1024];
+            int n;
+            while (out.size() < maxBytes && (n = in.read(buffer, 0, Math.min(buffer.length, maxBytes - out.size()))) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // The charset named in a Content-Type header, or null to let jsoup look for a meta tag.
+    private static String charsetOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                String charset = param.substring(8).replace("\"", "").trim();
+                try {
+                    return Charset.isSupported(charset) ? charset : null;
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
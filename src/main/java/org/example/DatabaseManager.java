@@ -1,20 +1,63 @@
 package org.example;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class DatabaseManager {
 
-    // The database file will be created in our project's root directory.
-    private static final String DB_URL = "jdbc:sqlite:NewsCache.db";
+    // The database file is created in the data directory (by default the working directory).
+    private static final String DB_FILE = "NewsCache.db";
 
     // This is a Singleton pattern. It ensures we only ever have one instance
     // of the DatabaseManager, preventing potential database connection issues.
     private static DatabaseManager instance;
 
+    // How many rows addArticles commits per transaction.
+    private final int insertChunkSize = Math.max(1, AppSettings.getInstance().getInt("db.insertChunkSize", 1000));
+
+    // One writer and a few readers, opened once and kept for the life of the app.
+    private final ConnectionManager connections;
+
+    // The seq given to the most recent insert. Only changed while holding the writer,
+    // so rows become visible to readers in seq order.
+    private final AtomicLong lastSeq = new AtomicLong();
+
+    // Latency of the statements on the ingest and UI paths; see Metrics.
+    private final LatencyHistogram insertTimer = Metrics.getInstance().timer("db.insert");
+    private final LatencyHistogram insertBatchTimer = Metrics.getInstance().timer("db.insertBatch");
+    private final LatencyHistogram pageQueryTimer = Metrics.getInstance().timer("db.queryPage");
+    private final LatencyHistogram articleQueryTimer = Metrics.getInstance().timer("db.queryArticle");
+    private final LatencyHistogram bodyQueryTimer = Metrics.getInstance().timer("db.queryBody");
+    private final LatencyHistogram summariesQueryTimer = Metrics.getInstance().timer("db.querySummaries");
+    private final LatencyHistogram deleteTimer = Metrics.getInstance().timer("db.delete");
+
+    // Recently read articles and listing pages; every write below keeps it up to date.
+    private final ArticleCache cache = new ArticleCache(
+            AppSettings.getInstance().getLong("cache.articleBytes", 8L << 20),
+            AppSettings.getInstance().getLong("cache.pageBytes", 16L << 20));
+
     // The constructor is private to enforce the Singleton pattern.
     private DatabaseManager() {
+        try {
+            Path dbFile = AppSettings.getInstance().dataPath(DB_FILE).toAbsolutePath();
+            Files.createDirectories(dbFile.getParent());
+            connections = new ConnectionManager("jdbc:sqlite:" + dbFile);
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Error connecting to the database: " + e.getMessage(), e);
+        }
         initializeDatabase();
     }
 
@@ -26,175 +69,1114 @@ public class DatabaseManager {
         return instance;
     }
 
-    // Establishes a connection to the database.
-    private Connection connect() {
-        Connection conn = null;
-        try {
-            conn = DriverManager.getConnection(DB_URL);
-        } catch (SQLException e) {
-            System.err.println("Error connecting to the database: " + e.getMessage());
+    // Closes the pooled connections. Called once when the application shuts down.
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.connections.close();
+            instance = null;
         }
-        return conn;
     }
 
-    // Creates the 'articles' table if it doesn't already exist.
+    // Bumped whenever the layout of the tables changes; stored in PRAGMA user_version.
+    // 0: the original layout with pubDate as Date.toString() text.
+    // 1: pubDate as epoch millis, plus indexes for the listing queries.
+    // 2: seq, the order in which rows were inserted, so the search index can catch up incrementally.
+    // 3: article_aliases, links of near-duplicate articles that were not stored again.
+    // 4: article_content, the full text fetched from each article's page, compressed.
+    // 5: deleted_links, and auto_vacuum = INCREMENTAL so RetentionManager can give space back.
+    // 6: cached_images, the images ImageCache has downloaded.
+    private static final int SCHEMA_VERSION = 6;
+
+    private static final String CREATE_ARTICLES_SQL = "CREATE TABLE IF NOT EXISTS articles (" +
+            "  link TEXT PRIMARY KEY," +
+            "  title TEXT NOT NULL," +
+            "  description TEXT," +
+            "  content TEXT," +
+            "  pubDate INTEGER NOT NULL DEFAULT 0," + // Epoch millis; 0 when the feed gave no date
+            "  category TEXT," +
+            "  isBookmarked INTEGER DEFAULT 0," + // Using INTEGER 0 for false, 1 for true
+            "  seq INTEGER NOT NULL DEFAULT 0" + // Increases with every insert; never reused
+            ");";
+
+    // Every listing is "newest first" within a filter, so each index ends in (pubDate, link):
+    // SQLite walks it backwards and never has to sort. link breaks ties between equal dates.
+    private static final String[] CREATE_INDEXES_SQL = {
+            "CREATE INDEX IF NOT EXISTS idx_articles_pubDate ON articles(pubDate, link)",
+            "CREATE INDEX IF NOT EXISTS idx_articles_category_pubDate ON articles(category, pubDate, link)",
+            "CREATE INDEX IF NOT EXISTS idx_articles_bookmarked_pubDate ON articles(isBookmarked, pubDate, link)",
+            "CREATE INDEX IF NOT EXISTS idx_articles_seq ON articles(seq)"
+    };
+
+    // Creates the tables if they don't already exist, and upgrades older database files.
     private void initializeDatabase() {
-        String sql = "CREATE TABLE IF NOT EXISTS articles (" +
+        // HTTP validators of each feed, so unchanged feeds can be skipped on the next fetch.
+        String feedStateSql = "CREATE TABLE IF NOT EXISTS feed_state (" +
+                "  url TEXT PRIMARY KEY," +
+                "  etag TEXT," +
+                "  lastModified TEXT," +
+                "  bodyHash TEXT" +
+                ");";
+        // Near-duplicates of stored articles, e.g. the same story syndicated to another feed.
+        String aliasesSql = "CREATE TABLE IF NOT EXISTS article_aliases (" +
+                "  link TEXT PRIMARY KEY," +
+                "  canonicalLink TEXT NOT NULL," + // The stored article it duplicates
+                "  category TEXT" +
+                ");";
+        // The main text of each article's web page, found by ContentFetcher. body is the
+        // Deflate-compressed UTF-8 text with paragraphs separated by blank lines, or NULL
+        // when the page could not be used (an HTTP error, not HTML, or too little text),
+        // so it is not fetched again.
+        String contentSql = "CREATE TABLE IF NOT EXISTS article_content (" +
                 "  link TEXT PRIMARY KEY," +
-                "  title TEXT NOT NULL," +
-                "  description TEXT," +
-                "  content TEXT," +
-                "  pubDate TEXT," +
-                "  category TEXT," +
-                "  isBookmarked INTEGER DEFAULT 0" + // Using INTEGER 0 for false, 1 for true
+                "  body BLOB," +
+                "  fetchedAt INTEGER NOT NULL," + // Epoch millis
+                "  status INTEGER NOT NULL" + // HTTP status of the page
+                ");";
+        // Links of articles removed by RetentionManager, and of their aliases. Still "seen", so
+        // a feed that keeps carrying an old item doesn't bring it back; pruned after a while.
+        String deletedSql = "CREATE TABLE IF NOT EXISTS deleted_links (" +
+                "  link TEXT PRIMARY KEY," +
+                "  deletedAt INTEGER NOT NULL" + // Epoch millis
+                ");";
+
+        // Images downloaded by ImageCache; several URLs may share one file.
+        String imagesSql = "CREATE TABLE IF NOT EXISTS cached_images (" +
+                "  url TEXT PRIMARY KEY," +
+                "  file TEXT NOT NULL," + // Relative to the image cache directory
+                "  size INTEGER NOT NULL," +
+                "  lastUsed INTEGER NOT NULL" + // Epoch millis
                 ");";
 
-        try (Connection conn = this.connect();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+        try {
+            connections.write(conn -> {
+                try (Statement stmt = conn.getConnection().createStatement()) {
+                    int version;
+                    try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+                        version = rs.next() ? rs.getInt(1) : 0;
+                    }
+                    if (version < 5) {
+                        enableIncrementalVacuum(stmt);
+                    }
+                    if (version < 1 && hasTextPubDate(stmt)) {
+                        migrateToEpochPubDate(conn.getConnection());
+                    }
+                    stmt.execute(CREATE_ARTICLES_SQL);
+                    if (version < 2) {
+                        addInsertSequence(stmt);
+                    }
+                    for (String indexSql : CREATE_INDEXES_SQL) {
+                        stmt.execute(indexSql);
+                    }
+                    stmt.execute(feedStateSql);
+                    stmt.execute(aliasesSql);
+                    stmt.execute(contentSql);
+                    stmt.execute(deletedSql);
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_deleted_links_deletedAt ON deleted_links(deletedAt)");
+                    stmt.execute(imagesSql);
+                    stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+                    try (ResultSet rs = stmt.executeQuery("SELECT IFNULL(MAX(seq), 0) FROM articles")) {
+                        lastSeq.set(rs.next() ? rs.getLong(1) : 0);
+                    }
+                }
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println("Error creating database table: " + e.getMessage());
         }
     }
 
-    public void setBookmarkStatus(String link, boolean isBookmarked) {
-        String sql = "UPDATE articles SET isBookmarked = ? WHERE link = ?";
-        try (Connection conn = this.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            // Store the boolean as an integer (1 for true, 0 for false)
-            pstmt.setInt(1, isBookmarked ? 1 : 0);
-            pstmt.setString(2, link);
-            pstmt.executeUpdate();
+    // True for database files created before pubDate was stored as epoch millis.
+    private static boolean hasTextPubDate(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(articles)")) {
+            while (rs.next()) {
+                if ("pubDate".equals(rs.getString("name"))) {
+                    return "TEXT".equalsIgnoreCase(rs.getString("type"));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lets deleted space be handed back to the file system a few pages at a time (see
+     * incrementalVacuum). The setting only takes effect on an existing file after a full
+     * VACUUM, which rewrites it once; a new file is empty and costs nothing.
+     */
+    private static void enableIncrementalVacuum(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA auto_vacuum")) {
+            if (rs.next() && rs.getInt(1) == 2) {
+                return;
+            }
+        }
+        System.out.println("Enabling incremental vacuum on NewsCache.db...");
+        long start = System.currentTimeMillis();
+        stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+        stmt.execute("VACUUM");
+        System.out.println("Rewrote NewsCache.db in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    // Gives every existing row a seq, in the order the rows were originally inserted.
+    private static void addInsertSequence(Statement stmt) throws SQLException {
+        boolean hasSeq = false;
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(articles)")) {
+            while (rs.next()) {
+                hasSeq |= "seq".equals(rs.getString("name"));
+            }
+        }
+        if (!hasSeq) {
+            stmt.execute("ALTER TABLE articles ADD COLUMN seq INTEGER NOT NULL DEFAULT 0");
+        }
+        stmt.execute("UPDATE articles SET seq = rowid WHERE seq = 0");
+    }
+
+    /**
+     * Rebuilds the articles table with pubDate as epoch millis, in one transaction.
+     * The old values were written with Date.toString(), so they are parsed back in Java;
+     * anything unparseable becomes 0 and sorts last.
+     */
+    private static void migrateToEpochPubDate(Connection conn) throws SQLException {
+        System.out.println("Migrating NewsCache.db to schema version 1...");
+        long start = System.currentTimeMillis();
+        SimpleDateFormat legacyFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE articles RENAME TO articles_old");
+            stmt.execute(CREATE_ARTICLES_SQL);
+            stmt.execute("INSERT INTO articles(link, title, description, content, pubDate, category, isBookmarked) " +
+                    "SELECT link, title, description, content, 0, category, isBookmarked FROM articles_old");
+
+            int migrated = 0;
+            try (ResultSet rs = stmt.executeQuery("SELECT link, pubDate FROM articles_old WHERE pubDate IS NOT NULL");
+                 PreparedStatement update = conn.prepareStatement("UPDATE articles SET pubDate = ? WHERE link = ?")) {
+                while (rs.next()) {
+                    try {
+                        update.setLong(1, legacyFormat.parse(rs.getString("pubDate")).getTime());
+                    } catch (ParseException e) {
+                        continue;
+                    }
+                    update.setString(2, rs.getString("link"));
+                    update.addBatch();
+                    if (++migrated % 1000 == 0) {
+                        update.executeBatch();
+                    }
+                }
+                update.executeBatch();
+            }
+            stmt.execute("DROP TABLE articles_old");
+            conn.commit();
+            System.out.println("Migrated " + migrated + " publication dates in " + (System.currentTimeMillis() - start) + " ms.");
         } catch (SQLException e) {
-            System.err.println("Error updating bookmark for link [" + link + "]: " + e.getMessage());
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
     }
 
-    public List<Article> getBookmarkedArticles() {
-        String sql = "SELECT * FROM articles WHERE isBookmarked = 1 ORDER BY pubDate DESC";
+    // The columns list and search views need. The HTML body is loaded separately, and
+    // only for the article actually being read.
+    private static final String SUMMARY_COLUMNS = "link, title, pubDate, category, isBookmarked";
+
+    private interface RowReader {
+        Article read(ResultSet rs) throws SQLException;
+    }
+
+    // Builds a body-less Article from a row selected with SUMMARY_COLUMNS.
+    private static Article readSummary(ResultSet rs) throws SQLException {
+        Article article = new Article();
+        article.setLink(rs.getString("link"));
+        article.setTitle(rs.getString("title"));
+        article.setPublishedAt(rs.getLong("pubDate"));
+        article.setCategory(rs.getString("category"));
+        // Convert the stored integer (0 or 1) back to a boolean
+        article.setBookmarked(rs.getInt("isBookmarked") == 1);
+        return article;
+    }
+
+    // Builds an Article from the current row of a "SELECT *" result.
+    private static Article readArticle(ResultSet rs, boolean withContent) throws SQLException {
+        Article article = readSummary(rs);
+        article.setDescription(rs.getString("description"));
+        if (withContent) {
+            article.setContent(rs.getString("content"));
+        }
+        return article;
+    }
+
+    private static List<Article> readArticles(PreparedStatement pstmt, RowReader reader) throws SQLException {
         List<Article> articles = new ArrayList<>();
-        try (Connection conn = this.connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                Article article = new Article();
-                // (This is the same logic as your getAllArticles method)
-                article.setLink(rs.getString("link"));
-                article.setTitle(rs.getString("title"));
-                article.setDescription(rs.getString("description"));
-                article.setPubDate(rs.getString("pubDate"));
-                article.setCategory(rs.getString("category"));
-                article.setBookmarked(rs.getInt("isBookmarked") == 1);
-                articles.add(article);
+                articles.add(reader.read(rs));
             }
-        } catch (SQLException e) {
-            System.err.println("Error getting bookmarked articles: " + e.getMessage());
         }
         return articles;
     }
 
+    public void setBookmarkStatus(String link, boolean isBookmarked) {
+        String sql = "UPDATE articles SET isBookmarked = ? WHERE link = ?";
+        try {
+            connections.write(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                // Store the boolean as an integer (1 for true, 0 for false)
+                pstmt.setInt(1, isBookmarked ? 1 : 0);
+                pstmt.setString(2, link);
+                return pstmt.executeUpdate();
+            });
+            cache.bookmarkChanged(link, isBookmarked);
+        } catch (SQLException e) {
+            System.err.println("Error updating bookmark for link [" + link + "]: " + e.getMessage());
+        }
+    }
+
+    public List<Article> getBookmarkedArticles() {
+        return getArticlesPage(ArticleFilter.bookmarked(), null, Integer.MAX_VALUE);
+    }
+
+    // The article without its content; served from memory when it was read recently.
     public Article getArticleByLink(String link) {
+        Article cached = cache.getArticle(link);
+        if (cached != null) {
+            return cached;
+        }
         String sql = "SELECT * FROM articles WHERE link = ?";
-        Article article = null;
-
-        try (Connection conn = this.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, link);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                article = new Article();
-                article.setLink(rs.getString("link"));
-                article.setTitle(rs.getString("title"));
-                article.setDescription(rs.getString("description"));
-                article.setPubDate(rs.getString("pubDate"));
-                article.setCategory(rs.getString("category"));
-                article.setBookmarked(rs.getInt("isBookmarked") == 1);
-            }
+        long version = cache.version();
+        long start = System.nanoTime();
+        try {
+            Article article = connections.read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setString(1, link);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? readArticle(rs, false) : null;
+                }
+            });
+            articleQueryTimer.recordSince(start);
+            cache.putArticle(article, version);
+            return article;
         } catch (SQLException e) {
             System.err.println("Error getting article by link [" + link + "]: " + e.getMessage());
         }
-        return article;
+        return null;
     }
 
-    public List<Article> getArticlesByCategory(String category) {
-        String sql = "SELECT * FROM articles WHERE category = ? ORDER BY pubDate DESC";
-        List<Article> articles = new ArrayList<>();
-
-        try (Connection conn = this.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // A number that changes with every write to the articles, for callers that cache what they read.
+    public long getDataVersion() {
+        return cache.version();
+    }
 
-            // Set the value for the placeholder (?)
-            pstmt.setString(1, category);
-            ResultSet rs = pstmt.executeQuery();
+    // Like getArticleByLink, but without the HTML body.
+    public Article getArticleSummary(String link) {
+        // A cached full article has every summary field too.
+        Article cached = cache.getArticle(link);
+        if (cached != null) {
+            return cached;
+        }
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM articles WHERE link = ?";
+        try {
+            return connections.read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setString(1, link);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? readSummary(rs) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error getting article summary [" + link + "]: " + e.getMessage());
+        }
+        return null;
+    }
 
-            // Loop through the result set and create Article objects
-            while (rs.next()) {
-                Article article = new Article();
-                article.setLink(rs.getString("link"));
-                article.setTitle(rs.getString("title"));
-                article.setDescription(rs.getString("description"));
-                // ... (copy the rest of the fields from your getAllArticles method) ...
-                article.setPubDate(rs.getString("pubDate"));
-                article.setCategory(rs.getString("category"));
-                article.setBookmarked(rs.getInt("isBookmarked") == 1);
+    /**
+     * Looks up the summaries of many articles in one round trip, returned in the order of
+     * the given links. Links that are not in the database are skipped.
+     */
+    public List<Article> getArticleSummaries(List<String> links) {
+        Map<String, Article> byLink = new HashMap<>();
+        long start = System.nanoTime();
+        try {
+            connections.read(conn -> {
+                // Stay well below SQLite's limit on the number of bound parameters.
+                for (int from = 0; from < links.size(); from += 500) {
+                    List<String> chunk = links.subList(from, Math.min(links.size(), from + 500));
+                    String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                    String sql = "SELECT " + SUMMARY_COLUMNS + " FROM articles WHERE link IN (" + placeholders + ")";
+                    // Not cached: every chunk size would be a different statement.
+                    try (PreparedStatement pstmt = conn.getConnection().prepareStatement(sql)) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            pstmt.setString(i + 1, chunk.get(i));
+                        }
+                        for (Article article : readArticles(pstmt, DatabaseManager::readSummary)) {
+                            byLink.put(article.getLink(), article);
+                        }
+                    }
+                }
+                return null;
+            });
+            summariesQueryTimer.recordSince(start);
+        } catch (SQLException e) {
+            System.err.println("Error getting " + links.size() + " article summaries: " + e.getMessage());
+        }
+        List<Article> articles = new ArrayList<>(byLink.size());
+        for (String link : links) {
+            Article article = byLink.get(link);
+            if (article != null) {
                 articles.add(article);
             }
-        } catch (SQLException e) {
-            System.err.println("Error getting articles by category [" + category + "]: " + e.getMessage());
         }
         return articles;
     }
 
+    /**
+     * Returns the HTML shown in the reader pane: the article's full text when ContentFetcher
+     * has stored it, otherwise the feed's description. Null if the article is unknown.
+     */
+    public String getArticleBody(String link) {
+        String sql = "SELECT a.description, c.body FROM articles a " +
+                "LEFT JOIN article_content c ON c.link = a.link WHERE a.link = ?";
+        long start = System.nanoTime();
+        try {
+            String body = connections.read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setString(1, link);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    String content = decompressContent(link, rs.getBytes("body"));
+                    return content != null ? toHtml(content) : rs.getString("description");
+                }
+            });
+            bodyQueryTimer.recordSince(start);
+            return body;
+        } catch (SQLException e) {
+            System.err.println("Error getting article body [" + link + "]: " + e.getMessage());
+        }
+        return null;
+    }
+
+    // Extracted text as HTML paragraphs.
+    private static String toHtml(String text) {
+        StringBuilder html = new StringBuilder(text.length() + 256);
+        for (String paragraph : text.split("\n\n")) {
+            html.append("<p>");
+            for (int i = 0; i < paragraph.length(); i++) {
+                char c = paragraph.charAt(i);
+                switch (c) {
+                    case '<': html.append("&lt;"); break;
+                    case '>': html.append("&gt;"); break;
+                    case '&': html.append("&amp;"); break;
+                    case '\n': html.append("<br>"); break;
+                    default: html.append(c);
+                }
+            }
+            html.append("</p>\n");
+        }
+        return html.toString();
+    }
+
+    public List<Article> getArticlesByCategory(String category) {
+        return getArticlesPage(ArticleFilter.category(category), null, Integer.MAX_VALUE);
+    }
+
     public void addArticle(Article article) {
         // The SQL statement uses placeholders (?) for security and efficiency.
-        String sql = "INSERT OR IGNORE INTO articles(link, title, description, content, pubDate, category) VALUES(?,?,?,?,?,?)";
+        String sql = "INSERT OR IGNORE INTO articles(link, title, description, content, pubDate, category, seq) VALUES(?,?,?,?,?,?,?)";
 
-        // 'try-with-resources' automatically closes the connection and statement.
-        try (Connection conn = this.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            // Bind the Article object's data to the SQL statement's placeholders.
-            pstmt.setString(1, article.getLink());
-            pstmt.setString(2, article.getTitle());
-            pstmt.setString(3, article.getDescription());
-            pstmt.setString(4, article.getContent());
-            pstmt.setString(5, article.getPubDate());
-            pstmt.setString(6, article.getCategory());
+        long start = System.nanoTime();
+        try {
+            int count = connections.write(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
 
-            // Run the SQL statement to insert the data.
-            pstmt.executeUpdate();
+                // Bind the Article object's data to the SQL statement's placeholders.
+                pstmt.setString(1, article.getLink());
+                pstmt.setString(2, article.getTitle());
+                pstmt.setString(3, article.getDescription());
+                pstmt.setString(4, article.getContent());
+                pstmt.setLong(5, article.getPublishedAt());
+                pstmt.setString(6, article.getCategory());
+                pstmt.setLong(7, lastSeq.incrementAndGet());
 
+                // Run the SQL statement to insert the data.
+                return pstmt.executeUpdate();
+            });
+            insertTimer.recordSince(start);
+            if (count > 0) {
+                cache.articlesInserted(Collections.singletonList(article));
+            }
         } catch (SQLException e) {
             System.err.println("Error adding article [" + article.getTitle() + "]: " + e.getMessage());
         }
     }
 
+    /**
+     * Inserts many articles at once. Rows go through one prepared statement as JDBC batches,
+     * and each chunk of insertChunkSize rows is committed in its own transaction, so SQLite
+     * syncs once per chunk instead of once per row. Articles whose link is already stored
+     * are ignored, and the result says which ones were actually new.
+     */
+    public InsertResult addArticles(Collection<Article> articles) {
+        String sql = "INSERT OR IGNORE INTO articles(link, title, description, content, pubDate, category, seq) VALUES(?,?,?,?,?,?,?)";
+        List<Article> inserted = new ArrayList<>();
+        int[] ignored = {0};
+        boolean failed = false;
+
+        long start = System.nanoTime();
+        try {
+            connections.write(conn -> {
+                Connection connection = conn.getConnection();
+                PreparedStatement pstmt = conn.prepare(sql);
+                connection.setAutoCommit(false);
+                try {
+                    List<Article> chunk = new ArrayList<>(insertChunkSize);
+                    for (Article article : articles) {
+                        // These would violate the table's constraints and fail the whole chunk.
+                        if (article.getLink() == null || article.getTitle() == null) {
+                            ignored[0]++;
+                            continue;
+                        }
+                        pstmt.setString(1, article.getLink());
+                        pstmt.setString(2, article.getTitle());
+                        pstmt.setString(3, article.getDescription());
+                        pstmt.setString(4, article.getContent());
+                        pstmt.setLong(5, article.getPublishedAt());
+                        pstmt.setString(6, article.getCategory());
+                        pstmt.setLong(7, lastSeq.incrementAndGet());
+                        pstmt.addBatch();
+                        chunk.add(article);
+                        if (chunk.size() >= insertChunkSize) {
+                            ignored[0] += executeChunk(connection, pstmt, chunk, inserted);
+                            chunk.clear();
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        ignored[0] += executeChunk(connection, pstmt, chunk, inserted);
+                    }
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return null;
+            });
+            insertBatchTimer.recordSince(start);
+        } catch (SQLException e) {
+            System.err.println("Error adding a batch of " + articles.size() + " articles: " + e.getMessage());
+            failed = true;
+        }
+        // Chunks committed before a failure are in the database all the same.
+        cache.articlesInserted(inserted);
+        return new InsertResult(inserted, ignored[0], failed);
+    }
+
+    // Runs the pending batch as one transaction and sorts its rows into inserted and ignored.
+    private int executeChunk(Connection conn, PreparedStatement pstmt, List<Article> chunk, List<Article> inserted)
+            throws SQLException {
+        int[] counts;
+        try {
+            counts = pstmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            pstmt.clearBatch();
+            conn.rollback();
+            throw e;
+        }
+        int ignored = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                inserted.add(chunk.get(i));
+            } else {
+                ignored++;
+            }
+        }
+        return ignored;
+    }
+
+    /**
+     * Returns up to limit articles matching the filter, newest first, starting just after
+     * the given article (or from the top when after is null). Paging by (pubDate, link)
+     * rather than OFFSET means every page is an index range scan, however deep it is.
+     * Recently read pages are served from memory.
+     */
+    public List<Article> getArticlesPage(ArticleFilter filter, Article after, int limit) {
+        List<Article> cached = cache.getPage(filter, after, limit);
+        if (cached != null) {
+            return cached;
+        }
+        StringBuilder sql = new StringBuilder(
+                "SELECT " + SUMMARY_COLUMNS + " FROM articles WHERE 1 = 1");
+        if (filter.isBookmarkedOnly()) {
+            sql.append(" AND isBookmarked = 1");
+        } else if (filter.getCategory() != null) {
+            sql.append(" AND category = ?");
+        }
+        if (after != null) {
+            sql.append(" AND (pubDate, link) < (?, ?)");
+        }
+        sql.append(" ORDER BY pubDate DESC, link DESC LIMIT ?");
+
+        long version = cache.version();
+        long start = System.nanoTime();
+        try {
+            List<Article> page = connections.read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql.toString());
+                int param = 1;
+                if (!filter.isBookmarkedOnly() && filter.getCategory() != null) {
+                    pstmt.setString(param++, filter.getCategory());
+                }
+                if (after != null) {
+                    pstmt.setLong(param++, after.getPublishedAt());
+                    pstmt.setString(param++, after.getLink());
+                }
+                pstmt.setInt(param, limit);
+                return readArticles(pstmt, DatabaseManager::readSummary);
+            });
+            pageQueryTimer.recordSince(start);
+            cache.putPage(filter, after, limit, page, version);
+            return page;
+        } catch (SQLException e) {
+            System.err.println("Error getting a page of articles for [" + filter + "]: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    // The stored full text, or null if there is none or its blob is corrupt.
+    private static String decompressContent(String link, byte[] content) {
+        if (content == null) {
+            return null;
+        }
+        try {
+            return CompressedText.decompress(content);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring the stored full text of [" + link + "]: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns up to limit articles inserted or changed after the given seq, in seq order,
+     * with the extracted full text as their content where there is one.
+     */
+    public List<Article> getArticlesAfterSeq(long afterSeq, int limit) {
+        String sql = "SELECT a.*, c.body AS contentBody FROM articles a " +
+                "LEFT JOIN article_content c ON c.link = a.link WHERE a.seq > ? ORDER BY a.seq LIMIT ?";
+        try {
+            return connections.read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setLong(1, afterSeq);
+                pstmt.setInt(2, limit);
+                return readArticles(pstmt, rs -> {
+                    Article article = readArticle(rs, false);
+                    article.setSeq(rs.getLong("seq"));
+                    // A corrupt blob leaves the article indexed by its description alone.
+                    article.setContent(decompressContent(article.getLink(), rs.getBytes("contentBody")));
+                    return article;
+                });
+            });
+        } catch (SQLException e) {
+            System.err.println("Error getting articles after seq " + afterSeq + ": " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Links of articles published at or after the given time whose page has not been
+     * fetched yet, newest first.
+     */
+    public List<String> getLinksNeedingContent(long publishedSince, int limit) {
+        String sql = "SELECT link FROM articles a WHERE pubDate >= ? " +
+                "AND NOT EXISTS (SELECT 1 FROM article_content c WHERE c.link = a.link) " +
+                "ORDER BY pubDate DESC, link DESC LIMIT ?";
+        try {
+            return connections.read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setLong(1, publishedSince);
+                pstmt.setInt(2, limit);
+                List<String> links = new ArrayList<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        links.add(rs.getString(1));
+                    }
+                }
+                return links;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error getting articles without content: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Stores the text extracted from an article's page, or records with a null text that
+     * the page had none worth keeping. The article gets a new seq in the same transaction,
+     * so IndexSync indexes the text on its next catch-up.
+     */
+    public void storeArticleContent(String link, String text, int status) {
+        // Nothing is stored for an article that was deleted while its page was being fetched.
+        String insertSql = "INSERT OR REPLACE INTO article_content(link, body, fetchedAt, status) " +
+                "SELECT ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM articles WHERE link = ?)";
+        String touchSql = "UPDATE articles SET seq = ? WHERE link = ?";
+        byte[] body = text != null ? CompressedText.compress(text) : null;
+        try {
+            connections.write(conn -> {
+                Connection connection = conn.getConnection();
+                connection.setAutoCommit(false);
+                try {
+                    PreparedStatement insert = conn.prepare(insertSql);
+                    insert.setString(1, link);
+                    insert.setBytes(2, body);
+                    insert.setLong(3, System.currentTimeMillis());
+                    insert.setInt(4, status);
+                    insert.setString(5, link);
+                    insert.executeUpdate();
+                    if (body != null) {
+                        PreparedStatement touch = conn.prepare(touchSql);
+                        touch.setLong(1, lastSeq.incrementAndGet());
+                        touch.setString(2, link);
+                        touch.executeUpdate();
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error storing content of [" + link + "]: " + e.getMessage());
+        }
+    }
+
+    public long countArticlesAfterSeq(long afterSeq) {
+        String sql = "SELECT COUNT(*) FROM articles WHERE seq > ?";
+        try {
+            return connections.read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setLong(1, afterSeq);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error counting articles after seq " + afterSeq + ": " + e.getMessage());
+        }
+        return 0;
+    }
+
+    // The highest seq handed out so far, whether or not that row was actually inserted.
+    public long getLastSeq() {
+        return lastSeq.get();
+    }
+
     public List<Article> getAllArticles() {
-        String sql = "SELECT * FROM articles ORDER BY pubDate DESC"; // Get newest articles first
-        List<Article> articles = new ArrayList<>();
+        String sql = "SELECT * FROM articles ORDER BY pubDate DESC, link DESC"; // Get newest articles first
+        try {
+            return connections.read(conn -> readArticles(conn.prepare(sql), rs -> readArticle(rs, true)));
+        } catch (SQLException e) {
+            System.err.println("Error getting all articles: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
 
-        try (Connection conn = this.connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    // Calls the consumer with the link of every stored, aliased or deleted article.
+    public void forEachKnownLink(Consumer<String> consumer) {
+        try {
+            connections.read(conn -> {
+                for (String sql : new String[]{"SELECT link FROM articles", "SELECT link FROM article_aliases",
+                        "SELECT link FROM deleted_links"}) {
+                    try (ResultSet rs = conn.prepare(sql).executeQuery()) {
+                        while (rs.next()) {
+                            consumer.accept(rs.getString(1));
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error reading stored links: " + e.getMessage());
+        }
+    }
 
-            // Loop through the result set row by row
-            while (rs.next()) {
-                Article article = new Article();
-                article.setLink(rs.getString("link"));
-                article.setTitle(rs.getString("title"));
-                article.setDescription(rs.getString("description"));
-                article.setContent(rs.getString("content"));
-                article.setPubDate(rs.getString("pubDate"));
-                article.setCategory(rs.getString("category"));
-                // Convert the stored integer (0 or 1) back to a boolean
-                article.setBookmarked(rs.getInt("isBookmarked") == 1);
+    // Articles published at or after the given time, oldest first, with description but no content.
+    public List<Article> getArticlesPublishedSince(long publishedAt) {
+        String sql = "SELECT * FROM articles WHERE pubDate >= ? ORDER BY pubDate, link";
+        try {
+            return connections.read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setLong(1, publishedAt);
+                return readArticles(pstmt, rs -> readArticle(rs, false));
+            });
+        } catch (SQLException e) {
+            System.err.println("Error getting articles published since " + publishedAt + ": " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
 
-                articles.add(article);
+    // Categories that have articles stored.
+    public List<String> getStoredCategories() {
+        String sql = "SELECT DISTINCT category FROM articles WHERE category IS NOT NULL";
+        try {
+            return connections.read(conn -> {
+                List<String> categories = new ArrayList<>();
+                try (ResultSet rs = conn.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        categories.add(rs.getString(1));
+                    }
+                }
+                return categories;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error getting the stored categories: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    public long countUnbookmarkedArticles() {
+        String sql = "SELECT COUNT(*) FROM articles WHERE isBookmarked = 0";
+        try {
+            return connections.read(conn -> {
+                try (ResultSet rs = conn.prepare(sql).executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error counting articles: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * A rough estimate of the bytes that deleting every unbookmarked article would free:
+     * their rows, full text and index entries. Characters are counted as bytes.
+     */
+    public long getDeletableBytes() {
+        String sql = "SELECT IFNULL(SUM(64 + 4 * length(a.link) + length(a.title) + IFNULL(length(a.description), 0)"
+                + " + 2 * IFNULL(length(a.category), 0) + IFNULL(length(c.body), 0)), 0)"
+                + " FROM articles a LEFT JOIN article_content c ON c.link = a.link WHERE a.isBookmarked = 0";
+        try {
+            return connections.read(conn -> {
+                try (ResultSet rs = conn.prepare(sql).executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error estimating the size of the articles: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    // Bytes of the database file in use, not counting free pages and the WAL file.
+    public long getUsedBytes() {
+        try {
+            return connections.read(conn -> {
+                try (Statement stmt = conn.getConnection().createStatement()) {
+                    return pragmaLong(stmt, "page_size") * (pragmaLong(stmt, "page_count") - pragmaLong(stmt, "freelist_count"));
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error reading the database size: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    private static long pragmaLong(Statement stmt, String pragma) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Deletes up to limit unbookmarked articles of the category published before the given
+     * time, oldest first, and returns their links. Articles without a date are left to the
+     * size limits.
+     */
+    public List<String> deleteArticlesOlderThan(String category, long publishedBefore, int limit) {
+        return deleteArticles("SELECT link FROM articles WHERE category = ? AND pubDate > 0 AND pubDate < ? " +
+                "AND isBookmarked = 0 ORDER BY pubDate, link LIMIT ?", category, publishedBefore, limit);
+    }
+
+    // Deletes the limit oldest unbookmarked articles and returns their links.
+    public List<String> deleteOldestArticles(int limit) {
+        return deleteArticles("SELECT link FROM articles WHERE isBookmarked = 0 ORDER BY pubDate, link LIMIT ?", limit);
+    }
+
+    /**
+     * Deletes the articles the query selects, with their content, in one transaction, and
+     * records their links in deleted_links. The selection runs on the writer, so an article
+     * bookmarked a moment ago is never deleted. The caller removes them from the search index.
+     */
+    private List<String> deleteArticles(String selectSql, Object... params) {
+        String[] deleteSql = {"DELETE FROM articles WHERE link = ?", "DELETE FROM article_content WHERE link = ?"};
+        String tombstoneSql = "INSERT OR REPLACE INTO deleted_links(link, deletedAt) VALUES(?,?)";
+        long start = System.nanoTime();
+        try {
+            List<String> links = connections.write(conn -> {
+                Connection connection = conn.getConnection();
+                PreparedStatement select = conn.prepare(selectSql);
+                for (int i = 0; i < params.length; i++) {
+                    select.setObject(i + 1, params[i]);
+                }
+                List<String> selected = new ArrayList<>();
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        selected.add(rs.getString(1));
+                    }
+                }
+                if (selected.isEmpty()) {
+                    return selected;
+                }
+                long now = System.currentTimeMillis();
+                connection.setAutoCommit(false);
+                try {
+                    for (String sql : deleteSql) {
+                        PreparedStatement delete = conn.prepare(sql);
+                        for (String link : selected) {
+                            delete.setString(1, link);
+                            delete.addBatch();
+                        }
+                        delete.executeBatch();
+                    }
+                    PreparedStatement tombstone = conn.prepare(tombstoneSql);
+                    for (String link : selected) {
+                        tombstone.setString(1, link);
+                        tombstone.setLong(2, now);
+                        tombstone.addBatch();
+                    }
+                    tombstone.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return selected;
+            });
+            if (!links.isEmpty()) {
+                deleteTimer.recordSince(start);
+                cache.articlesRemoved(links);
             }
+            return links;
         } catch (SQLException e) {
-            System.err.println("Error getting all articles: " + e.getMessage());
+            System.err.println("Error deleting articles: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Turns the aliases of deleted articles into tombstones, then forgets links deleted
+     * before the given time, so neither article_aliases nor deleted_links grows forever.
+     * Returns how many tombstones were pruned.
+     */
+    public int pruneDeletedLinks(long deletedBefore) {
+        String orphans = " FROM article_aliases WHERE canonicalLink NOT IN (SELECT link FROM articles)";
+        String tombstoneSql = "INSERT OR REPLACE INTO deleted_links(link, deletedAt) SELECT link, ?" + orphans;
+        String aliasesSql = "DELETE" + orphans;
+        String pruneSql = "DELETE FROM deleted_links WHERE deletedAt < ?";
+        try {
+            return connections.write(conn -> {
+                Connection connection = conn.getConnection();
+                connection.setAutoCommit(false);
+                try {
+                    PreparedStatement tombstone = conn.prepare(tombstoneSql);
+                    tombstone.setLong(1, System.currentTimeMillis());
+                    int aliases = tombstone.executeUpdate();
+                    conn.prepare(aliasesSql).executeUpdate();
+                    PreparedStatement prune = conn.prepare(pruneSql);
+                    prune.setLong(1, deletedBefore);
+                    int pruned = prune.executeUpdate();
+                    connection.commit();
+                    if (aliases > 0 || pruned > 0) {
+                        System.out.println("Retired " + aliases + " aliases of deleted articles, pruned "
+                                + pruned + " deleted links.");
+                    }
+                    return pruned;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error pruning deleted links: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Returns up to the given number of free pages to the file system and says how many
+     * it released. Each call holds the writer only briefly, so it can run between ingests.
+     */
+    public int incrementalVacuum(int pages) {
+        try {
+            return connections.write(conn -> {
+                try (Statement stmt = conn.getConnection().createStatement()) {
+                    long before = pragmaLong(stmt, "freelist_count");
+                    if (before == 0) {
+                        return 0;
+                    }
+                    // executeUpdate runs the pragma to completion; execute() would free only one page.
+                    stmt.executeUpdate("PRAGMA incremental_vacuum(" + pages + ")");
+                    return (int) (before - pragmaLong(stmt, "freelist_count"));
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error vacuuming the database: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Records near-duplicate articles, each mapped to the link of the stored copy, so they
+     * are recognised on later refreshes without being stored themselves. Returns false if
+     * they could not be recorded.
+     */
+    public boolean addArticleAliases(Map<Article, String> aliases) {
+        if (aliases.isEmpty()) {
+            return true;
+        }
+        String sql = "INSERT OR IGNORE INTO article_aliases(link, canonicalLink, category) VALUES(?,?,?)";
+        try {
+            connections.write(conn -> {
+                Connection connection = conn.getConnection();
+                PreparedStatement pstmt = conn.prepare(sql);
+                connection.setAutoCommit(false);
+                try {
+                    for (Map.Entry<Article, String> alias : aliases.entrySet()) {
+                        pstmt.setString(1, alias.getKey().getLink());
+                        pstmt.setString(2, alias.getValue());
+                        pstmt.setString(3, alias.getKey().getCategory());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    pstmt.clearBatch();
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return null;
+            });
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error recording " + aliases.size() + " article aliases: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Every cached image, least recently used first.
+    public List<CachedImage> getCachedImages() {
+        String sql = "SELECT url, file, size, lastUsed FROM cached_images ORDER BY lastUsed";
+        try {
+            return connections.read(conn -> {
+                List<CachedImage> images = new ArrayList<>();
+                try (ResultSet rs = conn.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        images.add(new CachedImage(rs.getString("url"), rs.getString("file"),
+                                rs.getLong("size"), rs.getLong("lastUsed")));
+                    }
+                }
+                return images;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error reading the image cache: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    public void saveCachedImage(CachedImage image) {
+        String sql = "INSERT OR REPLACE INTO cached_images(url, file, size, lastUsed) VALUES(?,?,?,?)";
+        try {
+            connections.write(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setString(1, image.getUrl());
+                pstmt.setString(2, image.getFile());
+                pstmt.setLong(3, image.getSize());
+                pstmt.setLong(4, image.getLastUsed());
+                return pstmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            System.err.println("Error saving cached image [" + image.getUrl() + "]: " + e.getMessage());
+        }
+    }
+
+    // Saves when each of the images was last shown, in one transaction.
+    public void touchCachedImages(Collection<CachedImage> images) {
+        updateCachedImages("UPDATE cached_images SET lastUsed = ? WHERE url = ?", images, true);
+    }
+
+    public void deleteCachedImages(Collection<CachedImage> images) {
+        updateCachedImages("DELETE FROM cached_images WHERE url = ?", images, false);
+    }
+
+    private void updateCachedImages(String sql, Collection<CachedImage> images, boolean withLastUsed) {
+        if (images.isEmpty()) {
+            return;
+        }
+        try {
+            connections.write(conn -> {
+                Connection connection = conn.getConnection();
+                PreparedStatement pstmt = conn.prepare(sql);
+                connection.setAutoCommit(false);
+                try {
+                    for (CachedImage image : images) {
+                        int column = 1;
+                        if (withLastUsed) {
+                            pstmt.setLong(column++, image.getLastUsed());
+                        }
+                        pstmt.setString(column, image.getUrl());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    pstmt.clearBatch();
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error updating " + images.size() + " cached images: " + e.getMessage());
+        }
+    }
+
+    public FeedState getFeedState(String url) {
+        String sql = "SELECT etag, lastModified, bodyHash FROM feed_state WHERE url = ?";
+        try {
+            return connections.read(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setString(1, url);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        return new FeedState(url, rs.getString("etag"), rs.getString("lastModified"), rs.getString("bodyHash"));
+                    }
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error getting feed state for [" + url + "]: " + e.getMessage());
+        }
+        return null;
+    }
+
+    public void saveFeedState(FeedState state) {
+        String sql = "INSERT OR REPLACE INTO feed_state(url, etag, lastModified, bodyHash) VALUES(?,?,?,?)";
+        try {
+            connections.write(conn -> {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setString(1, state.getUrl());
+                pstmt.setString(2, state.getEtag());
+                pstmt.setString(3, state.getLastModified());
+                pstmt.setString(4, state.getBodyHash());
+                return pstmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            System.err.println("Error saving feed state for [" + state.getUrl() + "]: " + e.getMessage());
         }
-        return articles;
     }
-}
\ No newline at end of file
+}
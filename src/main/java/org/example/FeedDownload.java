@@ -0,0 +1,71 @@
+package org.example;
+
+/**
+ * The raw bytes of a feed that changed since the last fetch and still needs parsing.
+ * Feeds that were not modified or failed to download skip parsing and carry only
+ * their final FeedResult.
+ */
+public class FeedDownload {
+
+    private final String category;
+    private final String url;
+    private final byte[] body;
+    private final String contentType;
+    private final FeedState state;
+    private final FeedResult result;
+    private final long startNanos;
+
+    private FeedDownload(String category, String url, byte[] body, String contentType, FeedState state,
+                         FeedResult result, long startNanos) {
+        this.category = category;
+        this.url = url;
+        this.body = body;
+        this.contentType = contentType;
+        this.state = state;
+        this.result = result;
+        this.startNanos = startNanos;
+    }
+
+    public static FeedDownload of(String category, String url, byte[] body, String contentType, FeedState state,
+                                  long startNanos) {
+        return new FeedDownload(category, url, body, contentType, state, null, startNanos);
+    }
+
+    public static FeedDownload finished(FeedResult result) {
+        return new FeedDownload(result.getCategory(), result.getUrl(), null, null, null, result, 0);
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    // The validators to remember once this feed's articles have been stored.
+    public FeedState getState() {
+        return state;
+    }
+
+    // Non-null when there is nothing left to parse for this feed.
+    public FeedResult getResult() {
+        return result;
+    }
+
+    public boolean needsParsing() {
+        return result == null;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+}
@@ -0,0 +1,87 @@
+package org.example;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of fetching a single feed: the parsed articles, or the reason it failed.
+ */
+public class FeedResult {
+
+    public enum Status {
+        // The feed had new content and was parsed.
+        UPDATED,
+        // The server answered 304 to our conditional request.
+        NOT_MODIFIED,
+        // The server sent the feed again, but the body is byte-for-byte what we saw last time.
+        UNCHANGED,
+        FAILED
+    }
+
+    private final Status status;
+    private final String category;
+    private final String url;
+    private final List<Article> articles;
+    private final String error;
+    private final long refreshHintMillis;
+    private final long elapsedMillis;
+
+    private FeedResult(Status status, String category, String url, List<Article> articles, String error,
+                       long refreshHintMillis, long elapsedMillis) {
+        this.status = status;
+        this.category = category;
+        this.url = url;
+        this.articles = articles;
+        this.error = error;
+        this.refreshHintMillis = refreshHintMillis;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public static FeedResult success(String category, String url, List<Article> articles, long refreshHintMillis,
+                                     long elapsedMillis) {
+        return new FeedResult(Status.UPDATED, category, url, articles, null, refreshHintMillis, elapsedMillis);
+    }
+
+    // A feed whose content has not changed since the last fetch; there is nothing to store.
+    public static FeedResult unchanged(Status status, String category, String url, long elapsedMillis) {
+        return new FeedResult(status, category, url, Collections.emptyList(), null, 0, elapsedMillis);
+    }
+
+    public static FeedResult failure(String category, String url, String error, long elapsedMillis) {
+        return new FeedResult(Status.FAILED, category, url, Collections.emptyList(), error, 0, elapsedMillis);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public List<Article> getArticles() {
+        return articles;
+    }
+
+    // Null when the feed was fetched and parsed successfully.
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    // How often the feed says it is worth polling (RSS ttl or sy:updatePeriod); 0 if it doesn't say.
+    public long getRefreshHintMillis() {
+        return refreshHintMillis;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,245 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls every feed in the background, each on its own interval.
+ *
+ * A feed's interval follows how often it actually publishes: half the typical gap between
+ * its newest items, so a busy feed is polled every few minutes while a feed that posts
+ * once a day is polled a few times a day. A ttl or sy:updatePeriod in the feed is
+ * respected as the shortest interval, and a feed that keeps answering "not modified"
+ * drifts towards the longest. A failing feed backs off exponentially.
+ *
+ * Due times are spread over a startup window and jittered on every reschedule, so feeds
+ * never fall into step with each other; together with a global limit on feeds polled at
+ * once, that avoids bursts of requests. Feeds wait in a DelayQueue, so a quiet feed costs
+ * nothing between polls.
+ */
+public class FeedScheduler {
+
+    // One feed's position in the schedule.
+    private static class FeedSchedule implements Delayed {
+        final String category;
+        final String url;
+        long intervalMillis;
+        long hintMillis;
+        int failures;
+        volatile long dueAtMillis;
+
+        FeedSchedule(String category, String url, long intervalMillis) {
+            this.category = category;
+            this.url = url;
+            this.intervalMillis = intervalMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAtMillis, ((FeedSchedule) other).dueAtMillis);
+        }
+    }
+
+    private final IngestPipeline pipeline;
+    private final IngestPipeline.Listener listener;
+    private final List<FeedSchedule> feeds = new ArrayList<>();
+    private final DelayQueue<FeedSchedule> queue = new DelayQueue<>();
+    // Limits how many feeds are being polled at once.
+    private final Semaphore budget;
+    private final ExecutorService pollers;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final long maxBackoffMillis;
+    private final long startupSpreadMillis;
+    private final double jitter;
+
+    /**
+     * Schedules the given feeds (category -> url). Results are reported to the listener
+     * as each poll finishes, on the scheduler's threads.
+     */
+    public FeedScheduler(IngestPipeline pipeline, Map<String, String> feeds, IngestPipeline.Listener listener) {
+        AppSettings settings = AppSettings.getInstance();
+        this.pipeline = pipeline;
+        this.listener = listener;
+        this.minIntervalMillis = TimeUnit.MINUTES.toMillis(Math.max(1, settings.getLong("scheduler.minIntervalMinutes", 5)));
+        this.maxIntervalMillis = Math.max(minIntervalMillis,
+                TimeUnit.MINUTES.toMillis(settings.getLong("scheduler.maxIntervalMinutes", 360)));
+        this.maxBackoffMillis = Math.max(minIntervalMillis,
+                TimeUnit.MINUTES.toMillis(settings.getLong("scheduler.maxBackoffMinutes", 720)));
+        this.startupSpreadMillis = TimeUnit.SECONDS.toMillis(Math.max(0, settings.getLong("scheduler.startupSpreadSeconds", 60)));
+        this.jitter = Math.min(0.5, Math.max(0, Double.parseDouble(settings.getString("scheduler.jitter", "0.1"))));
+        int maxConcurrent = Math.max(1, settings.getInt("scheduler.maxConcurrentFeeds", 2));
+        this.budget = new Semaphore(maxConcurrent);
+        this.pollers = Executors.newFixedThreadPool(maxConcurrent, RssFetcher.daemonThreads("feed-poll"));
+
+        long initialInterval = TimeUnit.MINUTES.toMillis(Math.max(1, settings.getLong("scheduler.initialIntervalMinutes", 30)));
+        for (Map.Entry<String, String> feed : feeds.entrySet()) {
+            this.feeds.add(new FeedSchedule(feed.getKey(), feed.getValue(), clamp(initialInterval)));
+        }
+    }
+
+    // Starts polling. The first poll of each feed falls at a random point in the startup window.
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        long now = System.currentTimeMillis();
+        for (FeedSchedule feed : feeds) {
+            feed.dueAtMillis = now + (startupSpreadMillis == 0 ? 0 : ThreadLocalRandom.current().nextLong(startupSpreadMillis));
+            queue.put(feed);
+        }
+        dispatcher = new Thread(this::dispatch, "feed-scheduler");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        System.out.println("Feed scheduler started for " + feeds.size() + " feeds.");
+    }
+
+    /**
+     * Stops scheduling new polls and waits for the ones in progress to finish storing and
+     * indexing what they fetched.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        dispatcher.interrupt();
+        pollers.shutdown();
+        try {
+            if (!pollers.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("Feed scheduler: polls still running after 30 s; leaving them.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Feed scheduler stopped.");
+    }
+
+    // Waits for the next due feed and hands it to a poller once the concurrency budget allows.
+    private void dispatch() {
+        try {
+            while (running) {
+                FeedSchedule feed = queue.take();
+                budget.acquire();
+                try {
+                    pollers.execute(() -> {
+                        try {
+                            poll(feed);
+                        } finally {
+                            budget.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    // Rejected because we are stopping.
+                    budget.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void poll(FeedSchedule feed) {
+        FeedResult[] outcome = new FeedResult[1];
+        try {
+            pipeline.run(Collections.singletonMap(feed.category, feed.url), new IngestPipeline.Listener() {
+                @Override
+                public void onFeedFinished(FeedResult result) {
+                    outcome[0] = result;
+                    listener.onFeedFinished(result);
+                }
+
+                @Override
+                public void onArticlesStored(List<Article> articles) {
+                    listener.onArticlesStored(articles);
+                }
+
+                @Override
+                public void onArticlesIndexed(List<Article> articles) {
+                    listener.onArticlesIndexed(articles);
+                }
+            });
+        } catch (RuntimeException e) {
+            System.err.println("Feed scheduler: polling " + feed.category + " failed: " + e);
+        }
+        long delay = reschedule(feed, outcome[0]);
+        System.out.println("Next poll of " + feed.category + " in " + TimeUnit.MILLISECONDS.toMinutes(delay) + " min");
+        if (running) {
+            feed.dueAtMillis = System.currentTimeMillis() + delay;
+            queue.put(feed);
+        }
+    }
+
+    // Works out the feed's new interval from the poll's outcome and returns the delay until the next poll.
+    private long reschedule(FeedSchedule feed, FeedResult result) {
+        if (result == null || result.getStatus() == FeedResult.Status.FAILED) {
+            feed.failures++;
+            long backoff = feed.intervalMillis << Math.min(feed.failures, 16);
+            return withJitter(Math.min(maxBackoffMillis, backoff));
+        }
+        feed.failures = 0;
+        if (result.getStatus() == FeedResult.Status.UPDATED) {
+            feed.hintMillis = result.getRefreshHintMillis();
+            long gap = typicalPublishGap(result.getArticles());
+            if (gap > 0) {
+                // Poll about twice per new item.
+                feed.intervalMillis = gap / 2;
+            }
+        } else {
+            // Nothing new since last time: look less often.
+            feed.intervalMillis = feed.intervalMillis * 3 / 2;
+        }
+        feed.intervalMillis = clamp(Math.max(feed.intervalMillis, feed.hintMillis));
+        return withJitter(feed.intervalMillis);
+    }
+
+    // The median time between the newest items in the feed, or 0 if there are too few dated items.
+    static long typicalPublishGap(List<Article> articles) {
+        List<Long> times = new ArrayList<>();
+        for (Article article : articles) {
+            if (article.getPublishedAt() > 0) {
+                times.add(article.getPublishedAt());
+            }
+        }
+        if (times.size() < 3) {
+            return 0;
+        }
+        times.sort(Collections.reverseOrder());
+        List<Long> gaps = new ArrayList<>();
+        for (int i = 1; i < Math.min(times.size(), 21); i++) {
+            gaps.add(times.get(i - 1) - times.get(i));
+        }
+        Collections.sort(gaps);
+        return gaps.get(gaps.size() / 2);
+    }
+
+    private long clamp(long interval) {
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, interval));
+    }
+
+    private long withJitter(long delay) {
+        if (jitter == 0) {
+            return delay;
+        }
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return (long) (delay * factor);
+    }
+}
@@ -0,0 +1,36 @@
+package org.example;
+
+/**
+ * What we remember about a feed between fetches: the HTTP validators the server gave us,
+ * plus a hash of the body for servers that send neither.
+ */
+public class FeedState {
+
+    private final String url;
+    private final String etag;
+    private final String lastModified;
+    private final String bodyHash;
+
+    public FeedState(String url, String etag, String lastModified, String bodyHash) {
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.bodyHash = bodyHash;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public String getBodyHash() {
+        return bodyHash;
+    }
+}
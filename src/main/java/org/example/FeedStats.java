@@ -0,0 +1,155 @@
+package org.example;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fetch and parse statistics for one feed: how long its downloads and parses take, how
+ * much it sends, and how its last fetch went. Recording only updates counters and plain
+ * fields; the status text is put together when someone reads it.
+ */
+public class FeedStats implements FeedStatsMBean {
+
+    private final String category;
+    private final LatencyHistogram fetchTime;
+    private final LatencyHistogram parseTime;
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder totalArticles = new LongAdder();
+
+    // The last fetch: its HTTP status (0 when it failed before getting one), whether it
+    // brought anything new, and the error if it failed.
+    private volatile int lastHttpStatus;
+    private volatile boolean lastChanged;
+    private volatile String lastError;
+    private volatile long lastFetchNanos;
+    private volatile long lastBytes;
+    private volatile long lastParseNanos;
+    private volatile int lastArticles;
+
+    FeedStats(String category) {
+        this.category = category;
+        this.fetchTime = new LatencyHistogram(category + " fetch");
+        this.parseTime = new LatencyHistogram(category + " parse");
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    // A finished download. changed is false for a 304 or a body identical to the last one.
+    public void recordFetch(long nanos, int httpStatus, long bytes, boolean changed) {
+        fetchTime.recordNanos(nanos);
+        lastFetchNanos = nanos;
+        lastHttpStatus = httpStatus;
+        lastChanged = changed;
+        lastError = null;
+        lastBytes = bytes;
+        totalBytes.add(bytes);
+        if (!changed) {
+            unchanged.increment();
+        }
+    }
+
+    public void recordFailure(long nanos, int httpStatus, String error) {
+        fetchTime.recordNanos(nanos);
+        lastFetchNanos = nanos;
+        lastHttpStatus = httpStatus;
+        lastChanged = false;
+        lastError = error;
+        lastBytes = 0;
+        failures.increment();
+    }
+
+    public void recordParse(long nanos, int articles) {
+        parseTime.recordNanos(nanos);
+        lastParseNanos = nanos;
+        lastArticles = articles;
+        totalArticles.add(articles);
+    }
+
+    @Override
+    public String getLastStatus() {
+        if (fetchTime.getCount() == 0) {
+            return "not fetched";
+        }
+        String error = lastError;
+        if (error != null) {
+            return "failed: " + error;
+        }
+        if (lastHttpStatus == 304) {
+            return "304 not modified";
+        }
+        return lastHttpStatus + (lastChanged ? " updated" : " unchanged");
+    }
+
+    @Override
+    public long getFetches() {
+        return fetchTime.getCount();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getUnchanged() {
+        return unchanged.sum();
+    }
+
+    @Override
+    public double getLastFetchMillis() {
+        return lastFetchNanos / 1e6;
+    }
+
+    @Override
+    public double getFetchP50Millis() {
+        return fetchTime.getP50Millis();
+    }
+
+    @Override
+    public double getFetchP95Millis() {
+        return fetchTime.getP95Millis();
+    }
+
+    @Override
+    public double getFetchMaxMillis() {
+        return fetchTime.getMaxMillis();
+    }
+
+    @Override
+    public long getLastBytes() {
+        return lastBytes;
+    }
+
+    @Override
+    public long getTotalBytes() {
+        return totalBytes.sum();
+    }
+
+    @Override
+    public long getParses() {
+        return parseTime.getCount();
+    }
+
+    @Override
+    public double getLastParseMillis() {
+        return lastParseNanos / 1e6;
+    }
+
+    @Override
+    public double getParseP95Millis() {
+        return parseTime.getP95Millis();
+    }
+
+    @Override
+    public int getLastArticles() {
+        return lastArticles;
+    }
+
+    @Override
+    public long getTotalArticles() {
+        return totalArticles.sum();
+    }
+}
@@ -0,0 +1,36 @@
+package org.example;
+
+// What FeedStats publishes over JMX, as org.example:type=Feed,name=<category>
+public interface FeedStatsMBean {
+
+    String getLastStatus();
+
+    long getFetches();
+
+    long getFailures();
+
+    // Fetches that found nothing new: 304 Not Modified, or the same body as last time.
+    long getUnchanged();
+
+    double getLastFetchMillis();
+
+    double getFetchP50Millis();
+
+    double getFetchP95Millis();
+
+    double getFetchMaxMillis();
+
+    long getLastBytes();
+
+    long getTotalBytes();
+
+    long getParses();
+
+    double getLastParseMillis();
+
+    double getParseP95Millis();
+
+    int getLastArticles();
+
+    long getTotalArticles();
+}
@@ -0,0 +1,376 @@
+package org.example;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Keeps the images that article descriptions refer to on disk, so the reader pane can show
+ * them without going to the network, and offline.
+ *
+ * Images of newly stored articles are downloaded in the background. Each is stored under
+ * the image-cache directory next to NewsCache.db, in a file named after the SHA-256 of its
+ * bytes, so the same picture behind several URLs is kept once. The cached_images table maps
+ * URLs to files. The whole index is also held in memory in least-recently-used order, so
+ * looking an image up while rendering never touches the database; when the files outgrow
+ * images.cacheBytes, the least recently shown are deleted.
+ */
+public class ImageCache {
+
+    private static final String CACHE_DIR = "image-cache";
+    private static ImageCache instance;
+
+    private final DatabaseManager dbManager;
+    private final Path directory;
+    private final long maxBytes;
+    private final int maxImageBytes;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    // url -> image, least recently used first. Guarded by this, as are the two below.
+    private final LinkedHashMap<String, CachedImage> images = new LinkedHashMap<>(256, 0.75f, true);
+    // How many URLs share each file.
+    private final Map<String, Integer> fileRefs = new HashMap<>();
+    private long totalBytes;
+
+    // Images shown since their lastUsed was last saved.
+    private final Set<CachedImage> touched = ConcurrentHashMap.newKeySet();
+    // URLs being downloaded, and ones that failed during this run.
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService downloaders;
+    private final ScheduledExecutorService flusher =
+            Executors.newSingleThreadScheduledExecutor(RssFetcher.daemonThreads("image-cache-flush"));
+    private volatile Consumer<String> onArticleImagesCached = link -> { };
+    private volatile Consumer<Set<String>> onImagesEvicted = urls -> { };
+
+    private final LatencyHistogram downloadTimer = Metrics.getInstance().timer("image.download");
+
+    private ImageCache() {
+        AppSettings settings = AppSettings.getInstance();
+        this.dbManager = DatabaseManager.getInstance();
+        this.directory = settings.dataPath(CACHE_DIR).toAbsolutePath();
+        this.maxBytes = Math.max(1 << 20, settings.getLong("images.cacheBytes", 256L << 20));
+        this.maxImageBytes = Math.max(1024, settings.getInt("images.maxImageBytes", 5 << 20));
+        this.connectTimeoutMs = settings.getInt("images.connectTimeoutMs", 5000);
+        this.readTimeoutMs = settings.getInt("images.readTimeoutMs", 10000);
+        ThreadFactory threads = RssFetcher.daemonThreads("image-fetch");
+        this.downloaders = Executors.newFixedThreadPool(Math.max(1, settings.getInt("images.maxParallel", 2)), runnable -> {
+            Thread thread = threads.newThread(runnable);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        for (CachedImage image : dbManager.getCachedImages()) {
+            add(image);
+        }
+        evictOverBudget();
+        System.out.println("Image cache: " + images.size() + " images, " + (totalBytes >> 10) + " KB in " + directory);
+        flusher.scheduleWithFixedDelay(this::flushTouched, 1, 1, TimeUnit.MINUTES);
+    }
+
+    public static synchronized ImageCache getInstance() {
+        if (instance == null) {
+            instance = new ImageCache();
+        }
+        return instance;
+    }
+
+    // Saves when images were last shown and stops downloading. Call before DatabaseManager.shutdown().
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.downloaders.shutdownNow();
+            instance.flusher.shutdownNow();
+            instance.flushTouched();
+            instance = null;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return AppSettings.getInstance().getBoolean("images.enabled", true);
+    }
+
+    // Called with an article's link once images of it have been downloaded, on a download thread.
+    public void setOnArticleImagesCached(Consumer<String> listener) {
+        this.onArticleImagesCached = listener;
+    }
+
+    // Called with the file: URLs of deleted images, so pages that show them can be rebuilt.
+    public void setOnImagesEvicted(Consumer<Set<String>> listener) {
+        this.onImagesEvicted = listener;
+    }
+
+    /**
+     * The local file: URL of the image, or null if it isn't cached. Counts as a use for
+     * the LRU order. Safe on any thread; never touches the database or the network.
+     */
+    public String localUrl(String url) {
+        CachedImage image;
+        synchronized (this) {
+            image = images.get(url);
+        }
+        if (image == null) {
+            return null;
+        }
+        image.setLastUsed(System.currentTimeMillis());
+        touched.add(image);
+        return directory.resolve(image.getFile()).toUri().toString();
+    }
+
+    // Queues the images in the descriptions of newly stored articles.
+    public void cacheImagesOf(Collection<Article> articles) {
+        for (Article article : articles) {
+            if (article.getDescription() == null || article.getLink() == null) {
+                continue;
+            }
+            List<String> urls = new ArrayList<>();
+            for (Element img : Jsoup.parseBodyFragment(article.getDescription(), article.getLink()).select("img[src]")) {
+                String url = img.absUrl("src");
+                if (url.startsWith("http") && !ArticleRenderer.isTracker(img)) {
+                    urls.add(url);
+                }
+            }
+            cacheImages(article.getLink(), urls);
+        }
+    }
+
+    /**
+     * Downloads the images that aren't cached yet, in the background. Once they are done,
+     * if any was new, the article's link is passed to the listener so its rendered page
+     * can be rebuilt with the local copies.
+     */
+    public void cacheImages(String articleLink, Collection<String> urls) {
+        List<String> missing = new ArrayList<>();
+        for (String url : new LinkedHashSet<>(urls)) {
+            boolean cached;
+            synchronized (this) {
+                cached = images.containsKey(url);
+            }
+            if (!cached && !failed.contains(url) && pending.add(url)) {
+                missing.add(url);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(missing.size());
+        AtomicBoolean anyStored = new AtomicBoolean();
+        for (String url : missing) {
+            try {
+                downloaders.execute(() -> {
+                    try {
+                        if (download(url)) {
+                            anyStored.set(true);
+                        }
+                    } finally {
+                        pending.remove(url);
+                        if (remaining.decrementAndGet() == 0 && anyStored.get()) {
+                            onArticleImagesCached.accept(articleLink);
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Rejected because we are shutting down.
+                pending.remove(url);
+            }
+        }
+    }
+
+    private boolean download(String url) {
+        long start = System.nanoTime();
+        HttpURLConnection httpcon = null;
+        try {
+            httpcon = (HttpURLConnection) new URL(url).openConnection();
+            httpcon.addRequestProperty("User-Agent", "Mozilla/5.0");
+            httpcon.addRequestProperty("Accept", "image/*");
+            httpcon.addRequestProperty("Accept-Encoding", "gzip");
+            httpcon.setConnectTimeout(connectTimeoutMs);
+            httpcon.setReadTimeout(readTimeoutMs);
+            int status = httpcon.getResponseCode();
+            if (status >= 400) {
+                throw new IOException("HTTP " + status);
+            }
+            String extension = extensionOf(httpcon.getContentType());
+            if (extension == null) {
+                throw new IOException("not an image: " + httpcon.getContentType());
+            }
+            byte[] bytes = readBody(httpcon);
+            String hash = sha256(bytes);
+            String file = hash.substring(0, 2) + "/" + hash + extension;
+            Path target = directory.resolve(file);
+            CachedImage image = new CachedImage(url, file, bytes.length, System.currentTimeMillis());
+            dbManager.saveCachedImage(image);
+            // Under the lock evictOverBudget() deletes files with, so it can't delete this one between the check and the add.
+            synchronized (this) {
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    // Written under a temporary name first, so a crash never leaves half a file behind the real name.
+                    Path temp = Files.createTempFile(target.getParent(), hash, ".part");
+                    Files.write(temp, bytes);
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                add(image);
+            }
+            downloadTimer.recordSince(start);
+            evictOverBudget();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failed.add(url);
+            System.err.println("Error caching image " + url + ": " + e);
+            return false;
+        } finally {
+            if (httpcon != null) {
+                httpcon.disconnect();
+            }
+        }
+    }
+
+    // Guarded by this.
+    private void add(CachedImage image) {
+        CachedImage previous = images.put(image.getUrl(), image);
+        if (previous != null) {
+            release(previous);
+        }
+        if (fileRefs.merge(image.getFile(), 1, Integer::sum) == 1) {
+            totalBytes += image.getSize();
+        }
+    }
+
+    // Drops one reference to the image's file; returns true if nothing refers to it any more. Guarded by this.
+    private boolean release(CachedImage image) {
+        int refs = fileRefs.merge(image.getFile(), -1, Integer::sum);
+        if (refs > 0) {
+            return false;
+        }
+        fileRefs.remove(image.getFile());
+        totalBytes -= image.getSize();
+        return true;
+    }
+
+    // Deletes the least recently used images until the files fit in 90% of the budget.
+    private void evictOverBudget() {
+        List<CachedImage> evicted = new ArrayList<>();
+        Set<String> deletedUrls = new LinkedHashSet<>();
+        synchronized (this) {
+            if (totalBytes <= maxBytes) {
+                return;
+            }
+            Iterator<CachedImage> it = images.values().iterator();
+            while (totalBytes > maxBytes * 9 / 10 && it.hasNext()) {
+                CachedImage image = it.next();
+                it.remove();
+                evicted.add(image);
+                touched.remove(image);
+                if (release(image)) {
+                    Path file = directory.resolve(image.getFile());
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        System.err.println("Error deleting cached image " + image.getFile() + ": " + e.getMessage());
+                    }
+                    deletedUrls.add(file.toUri().toString());
+                }
+            }
+        }
+        dbManager.deleteCachedImages(evicted);
+        System.out.println("Image cache: evicted " + evicted.size() + " images, " + deletedUrls.size() + " files");
+        if (!deletedUrls.isEmpty()) {
+            onImagesEvicted.accept(deletedUrls);
+        }
+    }
+
+    private void flushTouched() {
+        if (touched.isEmpty()) {
+            return;
+        }
+        List<CachedImage> batch = new ArrayList<>(touched);
+        touched.removeAll(batch);
+        dbManager.touchCachedImages(batch);
+    }
+
+    // Reads at most maxImageBytes; anything bigger isn't worth keeping.
+    private byte[] readBody(HttpURLConnection httpcon) throws IOException {
+        try (InputStream raw = httpcon.getInputStream();
+             InputStream in = "gzip".equalsIgnoreCase(httpcon.getContentEncoding()) ? new GZIPInputStream(raw) : raw) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+            byte[] buffer = new byte[16 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                if (out.size() > maxImageBytes) {
+                    throw new IOException("larger than " + maxImageBytes + " bytes");
+                }
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // The file extension for an image Content-Type, so the WebView can tell the format from the name.
+    private static String extensionOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String type = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        switch (type) {
+            case "image/jpeg":
+            case "image/jpg":
+            case "image/pjpeg":
+                return ".jpg";
+            case "image/png":
+                return ".png";
+            case "image/gif":
+                return ".gif";
+            case "image/webp":
+                return ".webp";
+            case "image/svg+xml":
+                return ".svg";
+            case "image/bmp":
+                return ".bmp";
+            default:
+                return type.startsWith("image/") ? ".img" : null;
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
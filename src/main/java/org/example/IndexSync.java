@@ -0,0 +1,143 @@
+package org.example;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the search index in step with the database.
+ *
+ * Every row in the articles table has a seq that grows with each insert. The index stores
+ * the highest seq it has fully indexed in its commit data, so catching up means indexing
+ * only the rows after that checkpoint. A warm start with nothing new does one COUNT query
+ * and no indexing at all. An index that is missing or was unreadable has no checkpoint
+ * and gets rebuilt from scratch, in parallel.
+ */
+public class IndexSync {
+
+    public interface Progress {
+        void onProgress(long indexed, long total);
+    }
+
+    private final DatabaseManager dbManager;
+    private final SearchManager searchManager;
+    private final int batchSize;
+    private final int rebuildThreads;
+
+    public IndexSync(DatabaseManager dbManager, SearchManager searchManager) {
+        AppSettings settings = AppSettings.getInstance();
+        this.dbManager = dbManager;
+        this.searchManager = searchManager;
+        this.batchSize = Math.max(1, settings.getInt("index.syncBatchSize", 1000));
+        this.rebuildThreads = Math.max(1, settings.getInt("index.rebuildThreads",
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Indexes every article inserted since the index's checkpoint and returns how many
+     * that was. Only one catch-up runs against an index at a time; a caller that arrives
+     * while another is running waits and then usually finds nothing left to do.
+     * Throws the error of a batch that couldn't be indexed; the checkpoint stays before
+     * it, so the next catch-up tries it again.
+     */
+    public long catchUp(Progress progress) {
+        synchronized (searchManager.getSyncLock()) {
+            long checkpoint = searchManager.getIndexedSeq();
+            if (checkpoint > dbManager.getLastSeq()) {
+                // The index belongs to a different or older database file.
+                System.out.println("Search index is ahead of the database; rebuilding it.");
+                searchManager.deleteAll();
+                checkpoint = 0;
+            }
+            long total = dbManager.countArticlesAfterSeq(checkpoint);
+            if (total == 0) {
+                return 0;
+            }
+
+            long start = System.nanoTime();
+            long indexed = checkpoint == 0 && total > batchSize
+                    ? rebuild(total, progress)
+                    : indexAfter(checkpoint, total, progress);
+            if (checkpoint == 0) {
+                // Make a full rebuild durable right away rather than at the next scheduled commit.
+                searchManager.commitNow();
+            }
+            System.out.println("Index sync: " + indexed + " articles in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            return indexed;
+        }
+    }
+
+    // Indexes new rows batch by batch, moving the checkpoint after each one that succeeded.
+    private long indexAfter(long checkpoint, long total, Progress progress) {
+        long indexed = 0;
+        while (true) {
+            List<Article> batch = dbManager.getArticlesAfterSeq(checkpoint, batchSize);
+            if (batch.isEmpty()) {
+                return indexed;
+            }
+            searchManager.indexArticles(batch);
+            checkpoint = batch.get(batch.size() - 1).getSeq();
+            searchManager.setIndexedSeq(checkpoint);
+            indexed += batch.size();
+            report(progress, indexed, Math.max(indexed, total));
+        }
+    }
+
+    /**
+     * Rebuilds the whole index. One thread reads batches from the database while a pool
+     * indexes them; the shared IndexWriter is thread-safe. The checkpoint is only set once
+     * every batch is in, so a rebuild interrupted halfway, or with a batch that failed,
+     * simply starts over next time.
+     */
+    private long rebuild(long total, Progress progress) {
+        System.out.println("Rebuilding the search index from " + total + " articles...");
+        ExecutorService pool = Executors.newFixedThreadPool(rebuildThreads, RssFetcher.daemonThreads("index-rebuild"));
+        // Bounds how many batches are held in memory waiting for an indexing thread.
+        Semaphore inFlight = new Semaphore(rebuildThreads * 2);
+        AtomicLong indexed = new AtomicLong();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        long lastSeq = 0;
+        try {
+            while (failure.get() == null) {
+                List<Article> batch = dbManager.getArticlesAfterSeq(lastSeq, batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                lastSeq = batch.get(batch.size() - 1).getSeq();
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        searchManager.indexArticles(batch);
+                        long done = indexed.addAndGet(batch.size());
+                        report(progress, done, Math.max(done, total));
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            searchManager.setIndexedSeq(lastSeq);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        }
+        return indexed.get();
+    }
+
+    private static void report(Progress progress, long indexed, long total) {
+        if (progress != null) {
+            progress.onProgress(indexed, total);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs NewsCache without a window: the feeds are polled by the FeedScheduler and stored
+ * and indexed exactly as in the desktop app, so a server can keep NewsCache.db and
+ * lucene-index up to date. Nothing here touches JavaFX, and the headless build runs it on
+ * the plain classpath without the JavaFX jars:
+ *
+ *   mvn -P headless package
+ *   java -jar target/NewsCache-1.0-SNAPSHOT.jar          (runs until stopped)
+ *   java -jar target/NewsCache-1.0-SNAPSHOT.jar --once   (one refresh of every feed, then exits)
+ *
+ * Timings and feed statistics are published over JMX (see Metrics) and printed on exit.
+ * With api.enabled=true it also serves the read-only JSON API (see ReadApiServer). Unless
+ * content.enabled=false, the full text of recent articles is fetched too (see ContentFetcher),
+ * and expired articles are deleted (see RetentionManager); --once applies retention once
+ * after the refresh.
+ *
+ * On SIGTERM or Ctrl+C, polls in progress are allowed to finish, then the search index is
+ * committed and the database closed.
+ */
+public class IngestDaemon {
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean once = Arrays.asList(args).contains("--once");
+        long start = System.nanoTime();
+
+        RssFetcher fetcher = new RssFetcher();
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        SearchManager searchManager = SearchManager.getInstance();
+        // Index anything stored while nothing was running.
+        try {
+            new IndexSync(dbManager, searchManager).catchUp((indexed, total) ->
+                    System.out.println("Indexing existing articles: " + indexed + " / " + total));
+        } catch (RuntimeException e) {
+            // The pipeline's catch-ups retry it.
+            System.err.println("Error bringing the search index up to date: " + e);
+        }
+        IngestPipeline pipeline = new IngestPipeline(fetcher, dbManager, searchManager);
+        System.out.println("NewsCache ingest daemon ready in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        if (once) {
+            pipeline.runAll(new IngestPipeline.Listener() {
+            });
+            if (AppSettings.getInstance().getBoolean("retention.enabled", true)) {
+                new RetentionManager(dbManager, searchManager).runOnce();
+            }
+            shutdown(null);
+            return;
+        }
+
+        ContentFetcher contentFetcher = ContentFetcher.startIfEnabled(dbManager,
+                new IndexSync(dbManager, searchManager), link -> { });
+        // Downloads images for the app to show offline; there are no rendered pages here to update.
+        ImageCache imageCache = ImageCache.isEnabled() ? ImageCache.getInstance() : null;
+        FeedScheduler scheduler = new FeedScheduler(pipeline, fetcher.getFeeds(), new IngestPipeline.Listener() {
+            @Override
+            public void onFeedFinished(FeedResult result) {
+                if (!result.isSuccess()) {
+                    System.err.println("Feed " + result.getCategory() + " failed: " + result.getError());
+                }
+            }
+
+            @Override
+            public void onArticlesStored(List<Article> articles) {
+                if (!articles.isEmpty()) {
+                    System.out.println("Stored " + articles.size() + " new articles.");
+                    if (imageCache != null) {
+                        imageCache.cacheImagesOf(articles);
+                    }
+                    if (contentFetcher != null) {
+                        contentFetcher.nudge();
+                    }
+                }
+            }
+        });
+
+        ReadApiServer api = ReadApiServer.startIfEnabled(dbManager, searchManager, fetcher.getFeeds());
+        RetentionManager retention = RetentionManager.startIfEnabled(dbManager, searchManager);
+
+        // Every worker thread is a daemon thread, so the main thread is what keeps the JVM up
+        // until the shutdown hook has flushed everything.
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Shutting down...");
+            if (api != null) {
+                api.stop();
+            }
+            if (contentFetcher != null) {
+                contentFetcher.stop();
+            }
+            if (retention != null) {
+                retention.stop();
+            }
+            shutdown(scheduler);
+            stopped.countDown();
+        }, "shutdown"));
+        scheduler.start();
+        stopped.await();
+    }
+
+    // Stops polling, then commits the index and closes the database, in that order.
+    private static void shutdown(FeedScheduler scheduler) {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+        ImageCache.shutdown();
+        SearchManager.shutdown();
+        DatabaseManager.shutdown();
+        System.out.println(Metrics.getInstance().report());
+    }
+}
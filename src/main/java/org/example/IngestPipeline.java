@@ -0,0 +1,400 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Streams feeds through four stages joined by bounded queues:
+ *
+ *   fetch workers -> parse workers -> database writer -> index writer
+ *
+ * The database writer first passes each batch through the ArticleDeduplicator, so links
+ * that are already stored, and near-copies of recent stories from other feeds, never
+ * reach the database or the index.
+ *
+ * Each stage hands work on as soon as it has it, so the first feed's articles are stored
+ * and searchable while slower feeds are still downloading. The queues are bounded, so a
+ * slow stage blocks the stages before it instead of letting work pile up in memory.
+ *
+ * The pipeline has no UI dependencies; callers watch progress through a Listener, whose
+ * callbacks run on the pipeline's own threads.
+ */
+public class IngestPipeline {
+
+    public interface Listener {
+        // A feed was downloaded and parsed, found unchanged, or failed.
+        default void onFeedFinished(FeedResult result) {
+        }
+
+        // A batch of newly inserted articles is now in the database (links already stored are left out).
+        default void onArticlesStored(List<Article> articles) {
+        }
+
+        // A batch of articles is now searchable.
+        default void onArticlesIndexed(List<Article> articles) {
+        }
+    }
+
+    public static class Stats {
+        private final AtomicInteger feedsUpdated = new AtomicInteger();
+        private final AtomicInteger feedsUnchanged = new AtomicInteger();
+        private final AtomicInteger feedsFailed = new AtomicInteger();
+        private final AtomicInteger articlesParsed = new AtomicInteger();
+        private final AtomicInteger articlesKnown = new AtomicInteger();
+        private final AtomicInteger articlesDuplicate = new AtomicInteger();
+        private final AtomicInteger articlesStored = new AtomicInteger();
+        private final AtomicInteger articlesIndexed = new AtomicInteger();
+        private volatile long elapsedMillis;
+
+        public int getFeedsUpdated() {
+            return feedsUpdated.get();
+        }
+
+        public int getFeedsUnchanged() {
+            return feedsUnchanged.get();
+        }
+
+        public int getFeedsFailed() {
+            return feedsFailed.get();
+        }
+
+        public int getArticlesParsed() {
+            return articlesParsed.get();
+        }
+
+        // Articles skipped because their link was already stored.
+        public int getArticlesKnown() {
+            return articlesKnown.get();
+        }
+
+        // Articles skipped as near-duplicates of a story stored from another feed.
+        public int getArticlesDuplicate() {
+            return articlesDuplicate.get();
+        }
+
+        public int getArticlesStored() {
+            return articlesStored.get();
+        }
+
+        public int getArticlesIndexed() {
+            return articlesIndexed.get();
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return feedsUpdated + " feeds updated, " + feedsUnchanged + " unchanged, " + feedsFailed + " failed; "
+                    + articlesParsed + " articles parsed, " + articlesKnown + " already stored, " + articlesDuplicate
+                    + " near-duplicates, " + articlesStored + " stored, " + articlesIndexed
+                    + " indexed in " + elapsedMillis + " ms";
+        }
+    }
+
+    // The articles of one parsed feed, plus the validators to save once they are stored.
+    private static class ParsedFeed {
+        final List<Article> articles;
+        final FeedState state;
+
+        ParsedFeed(List<Article> articles, FeedState state) {
+            this.articles = articles;
+            this.state = state;
+        }
+    }
+
+    // End-of-stream markers, compared by identity.
+    private static final FeedDownload END_OF_DOWNLOADS = FeedDownload.finished(FeedResult.failure(null, null, "end", 0));
+    private static final ParsedFeed END_OF_FEEDS = new ParsedFeed(new ArrayList<>(), null);
+    private static final List<Article> END_OF_ARTICLES = new ArrayList<>();
+
+    private final RssFetcher fetcher;
+    private final DatabaseManager dbManager;
+    private final ArticleDeduplicator deduplicator;
+    private final IndexSync indexSync;
+    private final int parseThreads;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushMillis;
+
+    public IngestPipeline(RssFetcher fetcher, DatabaseManager dbManager, SearchManager searchManager) {
+        AppSettings settings = AppSettings.getInstance();
+        this.fetcher = fetcher;
+        this.dbManager = dbManager;
+        this.deduplicator = ArticleDeduplicator.getInstance();
+        this.indexSync = new IndexSync(dbManager, searchManager);
+        this.parseThreads = Math.max(1, settings.getInt("pipeline.parseThreads",
+                Runtime.getRuntime().availableProcessors()));
+        this.queueCapacity = Math.max(1, settings.getInt("pipeline.queueCapacity", 4));
+        this.batchSize = Math.max(1, settings.getInt("pipeline.batchSize", 500));
+        this.flushMillis = Math.max(1, settings.getLong("pipeline.flushMs", 250));
+    }
+
+    // Runs every feed listed in feeds.properties through the pipeline.
+    public Stats runAll(Listener listener) {
+        return run(fetcher.getFeeds(), listener);
+    }
+
+    /**
+     * Runs the given feeds (category -> url) through the pipeline and blocks until every
+     * article has been stored and indexed.
+     */
+    public Stats run(Map<String, String> feeds, Listener listener) {
+        long start = System.nanoTime();
+        Stats stats = new Stats();
+        if (feeds.isEmpty()) {
+            return stats;
+        }
+
+        BlockingQueue<FeedDownload> downloads = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<ParsedFeed> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Article>> stored = new ArrayBlockingQueue<>(queueCapacity);
+
+        List<Thread> parsers = new ArrayList<>();
+        // A run for a single feed, as the scheduler does, needs no more than one parser.
+        for (int i = 0; i < Math.min(parseThreads, feeds.size()); i++) {
+            parsers.add(startStage("feed-parse-" + (i + 1), () -> parseFeeds(downloads, parsed, listener, stats)));
+        }
+        Thread dbWriter = startStage("db-writer", () -> storeArticles(parsed, stored, listener, stats));
+        Thread indexWriter = startStage("index-writer", () -> indexArticles(stored, listener, stats));
+
+        ExecutorService fetchPool = Executors.newFixedThreadPool(
+                Math.min(fetcher.getMaxParallelFetches(), feeds.size()), RssFetcher.daemonThreads("feed-fetch"));
+        try {
+            for (Map.Entry<String, String> feed : feeds.entrySet()) {
+                fetchPool.submit(() -> {
+                    FeedDownload download = fetcher.download(feed.getKey(), feed.getValue());
+                    if (download.needsParsing()) {
+                        // Blocks while the parsers are behind.
+                        downloads.put(download);
+                    } else {
+                        finishFeed(download.getResult(), listener, stats);
+                    }
+                    return null;
+                });
+            }
+            fetchPool.shutdown();
+            fetchPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+            // Shut the stages down in order so each one drains what the previous one produced.
+            for (int i = 0; i < parsers.size(); i++) {
+                downloads.put(END_OF_DOWNLOADS);
+            }
+            for (Thread parser : parsers) {
+                parser.join();
+            }
+            parsed.put(END_OF_FEEDS);
+            dbWriter.join();
+            indexWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fetchPool.shutdownNow();
+            parsers.forEach(Thread::interrupt);
+            dbWriter.interrupt();
+            indexWriter.interrupt();
+        }
+
+        stats.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("Ingest finished: " + stats);
+        return stats;
+    }
+
+    private void parseFeeds(BlockingQueue<FeedDownload> in, BlockingQueue<ParsedFeed> out, Listener listener,
+                            Stats stats) throws InterruptedException {
+        while (true) {
+            FeedDownload download = in.take();
+            if (download == END_OF_DOWNLOADS) {
+                return;
+            }
+            FeedResult result;
+            try {
+                result = fetcher.parse(download);
+            } catch (RuntimeException e) {
+                result = FeedResult.failure(download.getCategory(), download.getUrl(), "Parse failed: " + e,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - download.getStartNanos()));
+            }
+            finishFeed(result, listener, stats);
+            if (result.isSuccess()) {
+                stats.articlesParsed.addAndGet(result.getArticles().size());
+                out.put(new ParsedFeed(result.getArticles(), download.getState()));
+            }
+        }
+    }
+
+    // Collects parsed feeds into batches and writes them to the database.
+    private void storeArticles(BlockingQueue<ParsedFeed> in, BlockingQueue<List<Article>> out, Listener listener,
+                               Stats stats) throws InterruptedException {
+        List<Article> batch = new ArrayList<>();
+        List<FeedState> states = new ArrayList<>();
+        while (true) {
+            ParsedFeed next = in.poll(flushMillis, TimeUnit.MILLISECONDS);
+            if (next == END_OF_FEEDS) {
+                storeBatch(batch, states, out, listener, stats);
+                out.put(END_OF_ARTICLES);
+                return;
+            }
+            if (next != null) {
+                batch.addAll(next.articles);
+                states.add(next.state);
+            }
+            // Flush on a full batch, or as soon as the queue goes quiet so articles show up promptly.
+            if (batch.size() >= batchSize || (next == null && !states.isEmpty())) {
+                storeBatch(batch, states, out, listener, stats);
+                batch = new ArrayList<>();
+                states = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * Stores a batch and hands the new articles to the index writer. A batch that fails is
+     * logged and dropped: if the writer died instead, the parsers would block on the full
+     * queue for good and the run would never finish.
+     */
+    private void storeBatch(List<Article> batch, List<FeedState> states, BlockingQueue<List<Article>> out,
+                            Listener listener, Stats stats) throws InterruptedException {
+        if (states.isEmpty()) {
+            return;
+        }
+        List<Article> stored;
+        try {
+            stored = flushToDatabase(batch, states, listener, stats);
+        } catch (RuntimeException e) {
+            System.err.println("Error storing a batch of " + batch.size() + " articles: " + e);
+            return;
+        }
+        // Articles that were already stored are already indexed too.
+        if (!stored.isEmpty()) {
+            out.put(stored);
+        }
+    }
+
+    // Returns the articles that were new.
+    private List<Article> flushToDatabase(List<Article> batch, List<FeedState> states, Listener listener, Stats stats) {
+        List<Article> inserted = new ArrayList<>();
+        boolean complete = true;
+        ArticleDeduplicator.Result dedup = deduplicator.filter(batch);
+        if (!dedup.getFresh().isEmpty()) {
+            InsertResult result = dbManager.addArticles(dedup.getFresh());
+            inserted = result.getInserted();
+            complete = !result.isFailed();
+            List<String> insertedLinks = inserted.stream().map(Article::getLink).collect(Collectors.toList());
+            deduplicator.markStored(dedup, insertedLinks);
+            if (!complete) {
+                // Copies of a story whose first copy wasn't stored mustn't become its aliases.
+                Set<String> lost = dedup.getFresh().stream().map(Article::getLink).collect(Collectors.toSet());
+                lost.removeAll(insertedLinks);
+                dedup.getDuplicates().values().removeIf(lost::contains);
+            }
+        }
+        if (!dedup.getDuplicates().isEmpty()) {
+            if (dbManager.addArticleAliases(dedup.getDuplicates())) {
+                deduplicator.markStored(dedup.getDuplicates().keySet().stream()
+                        .map(Article::getLink).collect(Collectors.toList()));
+            } else {
+                complete = false;
+            }
+        }
+        // Only remember a feed's validators once its articles are safely stored. Otherwise the
+        // next poll would get a 304 or the same body hash, and the lost articles would never
+        // come back; without them, the feeds are downloaded and parsed in full again.
+        if (complete) {
+            for (FeedState state : states) {
+                dbManager.saveFeedState(state);
+            }
+        } else {
+            System.err.println("Not saving the validators of " + states.size() + " feeds; their articles were not all stored.");
+        }
+        stats.articlesKnown.addAndGet(dedup.getKnownCount());
+        stats.articlesDuplicate.addAndGet(dedup.getDuplicates().size());
+        stats.articlesStored.addAndGet(inserted.size());
+        List<Article> stored = inserted;
+        notifyListener(() -> listener.onArticlesStored(stored));
+        return stored;
+    }
+
+    // Collects stored articles into batches and adds them to the search index.
+    private void indexArticles(BlockingQueue<List<Article>> in, Listener listener, Stats stats) throws InterruptedException {
+        List<Article> batch = new ArrayList<>();
+        while (true) {
+            List<Article> next = in.poll(flushMillis, TimeUnit.MILLISECONDS);
+            if (next == END_OF_ARTICLES) {
+                flushToIndex(batch, listener, stats);
+                return;
+            }
+            if (next != null) {
+                batch.addAll(next);
+            }
+            if (batch.size() >= batchSize || (next == null && !batch.isEmpty())) {
+                flushToIndex(batch, listener, stats);
+                batch = new ArrayList<>();
+            }
+        }
+    }
+
+    private void flushToIndex(List<Article> batch, Listener listener, Stats stats) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            // The index follows the database's insert order, so indexing "everything new since
+            // the checkpoint" covers this batch and keeps the checkpoint exact.
+            stats.articlesIndexed.addAndGet((int) indexSync.catchUp(null));
+        } catch (RuntimeException e) {
+            // The checkpoint stays before the failed batch, so the next catch-up indexes it again.
+            System.err.println("Error indexing a batch of " + batch.size() + " articles: " + e);
+            return;
+        }
+        notifyListener(() -> listener.onArticlesIndexed(batch));
+    }
+
+    private void finishFeed(FeedResult result, Listener listener, Stats stats) {
+        switch (result.getStatus()) {
+            case UPDATED:
+                stats.feedsUpdated.incrementAndGet();
+                break;
+            case FAILED:
+                stats.feedsFailed.incrementAndGet();
+                break;
+            default:
+                stats.feedsUnchanged.incrementAndGet();
+        }
+        notifyListener(() -> listener.onFeedFinished(result));
+    }
+
+    // A misbehaving listener must not take a pipeline stage down with it.
+    private static void notifyListener(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            System.err.println("Ingest listener failed: " + e);
+        }
+    }
+
+    private interface Stage {
+        void run() throws InterruptedException;
+    }
+
+    private static Thread startStage(String name, Stage stage) {
+        Thread thread = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,38 @@
+package org.example;
+
+import java.util.List;
+
+/**
+ * What happened to a batch of articles handed to DatabaseManager.addArticles: the ones
+ * that were new, how many were skipped because their link was already stored, and
+ * whether a database error kept the rest of the batch out.
+ */
+public class InsertResult {
+
+    private final List<Article> inserted;
+    private final int ignoredCount;
+    private final boolean failed;
+
+    public InsertResult(List<Article> inserted, int ignoredCount, boolean failed) {
+        this.inserted = inserted;
+        this.ignoredCount = ignoredCount;
+        this.failed = failed;
+    }
+
+    public List<Article> getInserted() {
+        return inserted;
+    }
+
+    public int getInsertedCount() {
+        return inserted.size();
+    }
+
+    public int getIgnoredCount() {
+        return ignoredCount;
+    }
+
+    // True if some articles were neither inserted nor ignored; the inserted ones are stored all the same.
+    public boolean isFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,21 @@
+package org.example;
+
+// What a LatencyHistogram publishes over JMX, as org.example:type=Timer,name=...
+public interface LatencyHistogramMBean {
+
+    long getCount();
+
+    double getTotalMillis();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
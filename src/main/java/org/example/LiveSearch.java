@@ -0,0 +1,168 @@
+package org.example;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.geometry.Side;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextField;
+import javafx.util.Duration;
+import org.apache.lucene.queryparser.classic.QueryParser;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Search-as-you-type for a text field. Each keystroke restarts a short timer, and a search
+ * only runs once typing pauses. Searches run on a background thread; every one carries a
+ * generation number, so a search still queued when the text changes is skipped and a
+ * result that arrives for old text is dropped. Title completions are shown in a drop-down
+ * under the field.
+ *
+ * All methods must be called on the JavaFX Application Thread.
+ */
+public class LiveSearch {
+
+    // Characters that mean the user is writing Lucene query syntax, which we leave alone.
+    private static final String QUERY_SYNTAX = "\"():*?~^[]{}\\/+-!&|";
+
+    private final TextField field;
+    private final Consumer<List<Article>> onResults;
+    private final Runnable onCleared;
+    private final int suggestionCount;
+    private final PauseTransition debounce;
+    private final ContextMenu suggestions = new ContextMenu();
+    private final ExecutorService searcher = Executors.newSingleThreadExecutor(RssFetcher.daemonThreads("live-search"));
+
+    // Bumped on every edit and every submitted search; read by the search thread.
+    private final AtomicLong generation = new AtomicLong();
+    // True while we put a chosen suggestion into the field ourselves.
+    private boolean applyingSuggestion;
+
+    /**
+     * onResults receives the hits for the current text; onCleared runs when the field is
+     * emptied, so the caller can go back to whatever it showed before searching.
+     */
+    public LiveSearch(TextField field, Consumer<List<Article>> onResults, Runnable onCleared) {
+        AppSettings settings = AppSettings.getInstance();
+        this.field = field;
+        this.onResults = onResults;
+        this.onCleared = onCleared;
+        this.suggestionCount = Math.max(0, settings.getInt("ui.searchSuggestions", 8));
+        this.debounce = new PauseTransition(Duration.millis(Math.max(0, settings.getInt("ui.searchDebounceMs", 150))));
+
+        debounce.setOnFinished(event -> submit(asTyped(field.getText()), true));
+        field.textProperty().addListener((observable, oldText, newText) -> {
+            if (!applyingSuggestion) {
+                generation.incrementAndGet();
+                debounce.playFromStart();
+            }
+        });
+        field.focusedProperty().addListener((observable, wasFocused, focused) -> {
+            if (!focused) {
+                suggestions.hide();
+            }
+        });
+    }
+
+    // Searches for the current text right away, e.g. when Enter is pressed.
+    public void searchNow() {
+        debounce.stop();
+        suggestions.hide();
+        submit(asTyped(field.getText()), false);
+    }
+
+    private void submit(String queryText, boolean withSuggestions) {
+        long request = generation.incrementAndGet();
+        String typed = field.getText() == null ? "" : field.getText().trim();
+        if (queryText.isEmpty()) {
+            suggestions.hide();
+            onCleared.run();
+            return;
+        }
+
+        searcher.submit(() -> {
+            if (request != generation.get()) {
+                return; // superseded while waiting in the queue
+            }
+            long start = System.nanoTime();
+            SearchManager searchManager = SearchManager.getInstance();
+            List<String> titles = withSuggestions
+                    ? searchManager.suggest(typed, suggestionCount)
+                    : Collections.<String>emptyList();
+            if (request != generation.get()) {
+                return;
+            }
+            List<Article> results = searchManager.search(queryText);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            Platform.runLater(() -> {
+                if (request != generation.get()) {
+                    return;
+                }
+                onResults.accept(results);
+                showSuggestions(titles);
+                System.out.println("Live search [" + queryText + "]: " + results.size() + " results, "
+                        + titles.size() + " suggestions in " + elapsedMs + " ms");
+            });
+        });
+    }
+
+    private void showSuggestions(List<String> titles) {
+        if (titles.isEmpty() || !field.isFocused()) {
+            suggestions.hide();
+            return;
+        }
+        suggestions.getItems().clear();
+        for (String title : titles) {
+            MenuItem item = new MenuItem(title);
+            item.setMnemonicParsing(false);
+            item.setOnAction(event -> chooseSuggestion(title));
+            suggestions.getItems().add(item);
+        }
+        if (!suggestions.isShowing()) {
+            suggestions.show(field, Side.BOTTOM, 0, 0);
+        }
+    }
+
+    // Puts the chosen title into the field and searches for it as a literal phrase.
+    private void chooseSuggestion(String title) {
+        applyingSuggestion = true;
+        try {
+            field.setText(title);
+            field.positionCaret(title.length());
+        } finally {
+            applyingSuggestion = false;
+        }
+        debounce.stop();
+        suggestions.hide();
+        submit("\"" + QueryParser.escape(title) + "\"", false);
+    }
+
+    /**
+     * Turns the typed text into a query. Plain words have the last one treated as a prefix,
+     * so results keep up with a word that is only half typed; anything that already uses
+     * query syntax is passed through unchanged.
+     */
+    static String asTyped(String text) {
+        String query = text == null ? "" : text.trim();
+        if (query.isEmpty() || !Character.isLetterOrDigit(query.charAt(query.length() - 1))) {
+            return query;
+        }
+        for (int i = 0; i < query.length(); i++) {
+            if (QUERY_SYNTAX.indexOf(query.charAt(i)) >= 0) {
+                return query;
+            }
+        }
+        String[] words = query.split("\\s+");
+        String last = words[words.length - 1];
+        if (last.length() < 3 || last.equals("AND") || last.equals("OR") || last.equals("NOT")) {
+            // A prefix of a letter or two expands to a large share of the index's terms.
+            return query;
+        }
+        return query + "*";
+    }
+}
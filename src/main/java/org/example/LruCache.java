@@ -0,0 +1,155 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A least-recently-used map bounded by the total weight of its values rather than by
+ * their number, so a few large entries can't crowd out memory meant for many small ones.
+ * Counts hits, misses and evictions so it can be seen whether the cache is earning its
+ * keep; the same numbers are published over JMX once the cache is registered with Metrics.
+ * All methods are synchronized; lookups are cheap enough that this never matters.
+ */
+public class LruCache<K, V> implements LruCacheMBean {
+
+    private final String name;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LruCache(String name, long maxWeight, ToLongFunction<V> weigher) {
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    // Returns the cached value, or null on a miss.
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    // Looks without touching the recency order or the statistics.
+    public synchronized V peek(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Caches the value, evicting the least recently used entries until everything fits.
+     * A value heavier than the whole budget is not cached at all.
+     */
+    public synchronized void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        remove(key);
+        if (weight > maxWeight) {
+            return;
+        }
+        entries.put(key, value);
+        totalWeight += weight;
+        Iterator<V> eldest = entries.values().iterator();
+        while (totalWeight > maxWeight && eldest.hasNext()) {
+            totalWeight -= weigher.applyAsLong(eldest.next());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void remove(K key) {
+        V removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight -= weigher.applyAsLong(removed);
+        }
+    }
+
+    // Drops every entry the predicate accepts and returns how many that was.
+    public synchronized int removeIf(BiPredicate<K, V> predicate) {
+        int removed = 0;
+        Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, V> entry = it.next();
+            if (predicate.test(entry.getKey(), entry.getValue())) {
+                totalWeight -= weigher.applyAsLong(entry.getValue());
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // Replaces each value with what the function returns for it, without touching the recency order.
+    public synchronized void replaceAll(BiFunction<K, V, V> function) {
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+            V value = entry.getValue();
+            V replacement = function.apply(entry.getKey(), value);
+            if (replacement != value) {
+                totalWeight += weigher.applyAsLong(replacement) - weigher.applyAsLong(value);
+                entry.setValue(replacement);
+            }
+        }
+    }
+
+    // A snapshot of the cached values, for callers that need to look through them.
+    public synchronized List<V> values() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return totalWeight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s cache: %d hits, %d misses (%.1f%% hit rate), %d evictions, %d entries, %d KB",
+                name, hits, misses, getHitRate() * 100, evictions, entries.size(), totalWeight / 1024);
+    }
+}
@@ -0,0 +1,20 @@
+package org.example;
+
+// What an LruCache publishes over JMX, as org.example:type=Cache,name=...
+public interface LruCacheMBean {
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRate();
+
+    long getEvictions();
+
+    int getEntries();
+
+    // The current and maximum total weight of the entries, in the cache's own unit.
+    long getWeight();
+
+    long getMaxWeight();
+}
@@ -0,0 +1,126 @@
+package org.example;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Where the time goes: named latency timers for the database, the search index and
+ * searches, per-feed fetch and parse statistics, and the hit rates of the in-memory caches.
+ *
+ * Code on a hot path looks its timer up once, keeps it in a field, and records with
+ * timer.recordSince(start); recording never allocates. Everything registered here is also
+ * published as a JMX MBean under org.example (see it with jconsole or VisualVM), and
+ * report() renders it all as text for the stats window and the daemon's shutdown log.
+ */
+public class Metrics {
+
+    private static Metrics instance;
+
+    private final MBeanServer mbeanServer;
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, FeedStats> feeds = new ConcurrentHashMap<>();
+    private final Map<String, LruCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    private Metrics() {
+        mbeanServer = AppSettings.getInstance().getBoolean("metrics.jmx", true)
+                ? ManagementFactory.getPlatformMBeanServer() : null;
+    }
+
+    public static synchronized Metrics getInstance() {
+        if (instance == null) {
+            instance = new Metrics();
+        }
+        return instance;
+    }
+
+    // The timer with the given name, created on first use. Names read like "db.insertBatch".
+    public LatencyHistogram timer(String name) {
+        LatencyHistogram timer = timers.get(name);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(name, key -> {
+                LatencyHistogram created = new LatencyHistogram(key);
+                register("Timer", key, created);
+                return created;
+            });
+        }
+        return timer;
+    }
+
+    // The statistics of the feed with the given category, created on first use.
+    public FeedStats feed(String category) {
+        FeedStats stats = feeds.get(category);
+        if (stats == null) {
+            stats = feeds.computeIfAbsent(category, key -> {
+                FeedStats created = new FeedStats(key);
+                register("Feed", key, created);
+                return created;
+            });
+        }
+        return stats;
+    }
+
+    // Publishes the cache's statistics, replacing an earlier cache of the same name.
+    public void registerCache(LruCache<?, ?> cache) {
+        caches.put(cache.getName(), cache);
+        register("Cache", cache.getName(), cache);
+    }
+
+    private void register(String type, String name, Object mbean) {
+        if (mbeanServer == null) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName("org.example:type=" + type + ",name=" + ObjectName.quote(name));
+            if (mbeanServer.isRegistered(objectName)) {
+                mbeanServer.unregisterMBean(objectName);
+            }
+            mbeanServer.registerMBean(mbean, objectName);
+        } catch (JMException e) {
+            System.err.println("Could not publish " + type + " " + name + " over JMX: " + e.getMessage());
+        }
+    }
+
+    // Starts every timer afresh, e.g. before timing one refresh. Feed and cache counts are kept.
+    public void resetTimers() {
+        for (LatencyHistogram timer : timers.values()) {
+            timer.reset();
+        }
+    }
+
+    // Everything recorded so far, as a plain-text table.
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-28s %8s %10s %9s %9s %9s %9s %9s%n",
+                "Timer", "count", "total s", "mean ms", "p50", "p95", "p99", "max"));
+        for (LatencyHistogram timer : new TreeMap<>(timers).values()) {
+            out.append(String.format("%-28s %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    timer.getName(), timer.getCount(), timer.getTotalMillis() / 1000, timer.getMeanMillis(),
+                    timer.getP50Millis(), timer.getP95Millis(), timer.getP99Millis(), timer.getMaxMillis()));
+        }
+
+        out.append(String.format("%n%-24s %7s %5s %7s %9s %9s %9s %9s %8s %9s  %s%n",
+                "Feed", "fetches", "fail", "same", "last ms", "p95 ms", "last KB", "total KB",
+                "parse ms", "articles", "last status"));
+        for (FeedStats feed : new TreeMap<>(feeds).values()) {
+            out.append(String.format("%-24s %7d %5d %7d %9.1f %9.1f %9.1f %9d %8.1f %9d  %s%n",
+                    feed.getCategory(), feed.getFetches(), feed.getFailures(), feed.getUnchanged(),
+                    feed.getLastFetchMillis(), feed.getFetchP95Millis(), feed.getLastBytes() / 1024.0,
+                    feed.getTotalBytes() / 1024, feed.getLastParseMillis(), feed.getTotalArticles(),
+                    feed.getLastStatus()));
+        }
+
+        out.append(String.format("%n%-24s %8s %10s %10s %10s %9s %10s%n",
+                "Cache", "hit rate", "hits", "misses", "evictions", "entries", "weight"));
+        for (LruCache<?, ?> cache : new TreeMap<>(caches).values()) {
+            out.append(String.format("%-24s %7.1f%% %10d %10d %10d %9d %10d%n",
+                    cache.getName(), cache.getHitRate() * 100, cache.getHits(), cache.getMisses(),
+                    cache.getEvictions(), cache.getEntries(), cache.getWeight()));
+        }
+        return out.toString();
+    }
+}
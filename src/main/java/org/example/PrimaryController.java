@@ -11,7 +11,11 @@ import javafx.application.Platform;
 // Notice we are importing the Article class we created
 import org.example.SearchManager;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class PrimaryController {
 
@@ -47,17 +51,45 @@ public class PrimaryController {
      * It's the perfect place to initialize our UI with data.
      */
 
+    // Pages articles into the table as the user scrolls, instead of loading a whole category.
+    private ArticlePager articlePager;
+
+    // The services below are started by startServices() on the background thread, and are
+    // null until then.
+    // Polls each feed in the background on its own interval.
+    private volatile FeedScheduler feedScheduler;
+    private volatile ReadApiServer readApi;
+    // Fetches the full text of recent articles from their web pages.
+    private volatile ContentFetcher contentFetcher;
+    // Deletes expired articles and compacts the database and index.
+    private volatile RetentionManager retention;
+
+    // Runs searches from the search field as the user types.
+    private LiveSearch liveSearch;
+
+    // Local copies of article images, or null if images.enabled is false.
+    private volatile ImageCache imageCache;
+    // Prepared reader pages of recently shown articles and their neighbours.
+    private volatile ArticleRenderer renderer;
+    // Articles on each side of the selection prepared in the background.
+    private final int prefetchNeighbours = Math.max(0, AppSettings.getInstance().getInt("ui.prefetchNeighbours", 2));
+
+    // Database and index work started from the UI: opening them at startup, bookmark changes
+    // and article pages. One thread, so bookmark changes are applied in the order they were
+    // made, and only once startup has opened everything. Nothing in this controller touches
+    // SQLite or Lucene on the JavaFX Application Thread.
+    private final ExecutorService background = Executors.newSingleThreadExecutor(RssFetcher.daemonThreads("ui-io"));
+
     private void filterArticlesByCategory(String category) {
-        DatabaseManager dbManager = DatabaseManager.getInstance();
-        List<Article> articles;
+        ArticleFilter filter;
         if (category == null || category.equals("All Articles")) {
-            articles = dbManager.getAllArticles();
+            filter = ArticleFilter.all();
         } else if (category.equals("Bookmarked")) { // <-- New case
-            articles = dbManager.getBookmarkedArticles();
+            filter = ArticleFilter.bookmarked();
         } else {
-            articles = dbManager.getArticlesByCategory(category);
+            filter = ArticleFilter.category(category);
         }
-        articleTableView.getItems().setAll(articles);
+        articlePager.show(filter);
         System.out.println("Filtered view for category: " + category);
     }
     @FXML
@@ -72,6 +104,11 @@ public class PrimaryController {
         titleColumn.prefWidthProperty().bind(articleTableView.widthProperty().multiply(0.70));
         dateColumn.prefWidthProperty().bind(articleTableView.widthProperty().multiply(0.30));
 
+        articlePager = new ArticlePager(articleTableView, AppSettings.getInstance().getInt("ui.pageSize", 200));
+        liveSearch = new LiveSearch(searchField, this::showSearchResults,
+                // An emptied search field goes back to the selected category.
+                () -> filterArticlesByCategory(categoryListView.getSelectionModel().getSelectedItem()));
+
         // --- Step 2: Add Listener for Article Selection ---
         articleTableView.getSelectionModel().selectedItemProperty().addListener(
                 (observable, oldValue, newArticle) -> displayArticleContent(newArticle)
@@ -95,20 +132,74 @@ public class PrimaryController {
         // --- Step 5: Select the first item by default ---
         categoryListView.getSelectionModel().selectFirst();
 
-        // --- (Temporary) Indexing of existing articles ---
-        System.out.println("Indexing existing articles in the background...");
-        new Thread(() -> {
-            SearchManager searchManager = SearchManager.getInstance();
-            DatabaseManager dbManager = DatabaseManager.getInstance();
-            List<Article> allArticles = dbManager.getAllArticles();
-            for (Article article : allArticles) {
-                searchManager.indexArticle(article);
-            }
-            System.out.println("Finished indexing " + allArticles.size() + " existing articles.");
-        }).start();
+        // Opening the database and index, and the dedup state, can take a while on a large archive.
+        background.execute(this::startServices);
 
         System.out.println("Initialization complete.");
     }
+
+    /**
+     * Opens the database and the search index and starts the background services. Runs
+     * first on the background thread, so the window shows at once however large the
+     * archive is; the article pages and bookmark changes queued behind it wait for it.
+     */
+    private void startServices() {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        SearchManager searchManager = SearchManager.getInstance();
+        ImageCache images = ImageCache.isEnabled() ? ImageCache.getInstance() : null;
+        ArticleRenderer articleRenderer =
+                new ArticleRenderer(AppSettings.getInstance().getLong("ui.renderCacheChars", 8_000_000), images);
+        imageCache = images;
+        renderer = articleRenderer;
+        RssFetcher fetcher = new RssFetcher();
+
+        // --- Bring the search index up to date with articles stored since its last checkpoint ---
+        Thread indexSyncThread = new Thread(() -> {
+            IndexSync indexSync = new IndexSync(dbManager, searchManager);
+            try {
+                indexSync.catchUp((indexed, total) ->
+                        System.out.println("Indexing existing articles: " + indexed + " / " + total));
+            } catch (RuntimeException e) {
+                System.err.println("Error bringing the search index up to date: " + e);
+            }
+        }, "index-sync");
+        indexSyncThread.setDaemon(true);
+        indexSyncThread.start();
+
+        readApi = ReadApiServer.startIfEnabled(dbManager, searchManager, fetcher.getFeeds());
+        // An article's prepared page shows the feed's description until its full text arrives.
+        contentFetcher = ContentFetcher.startIfEnabled(dbManager, new IndexSync(dbManager, searchManager),
+                articleRenderer::invalidate);
+        // Likewise its remote images, until they have been downloaded.
+        if (images != null) {
+            images.setOnArticleImagesCached(articleRenderer::invalidate);
+            // And drops pages again when the images they show are evicted.
+            images.setOnImagesEvicted(articleRenderer::invalidateImages);
+        }
+        retention = RetentionManager.startIfEnabled(dbManager, searchManager);
+
+        // --- Keep the feeds fresh in the background ---
+        if (AppSettings.getInstance().getBoolean("scheduler.enabled", true)) {
+            IngestPipeline pipeline = new IngestPipeline(fetcher, dbManager, searchManager);
+            feedScheduler = new FeedScheduler(pipeline, fetcher.getFeeds(), new IngestPipeline.Listener() {
+                @Override
+                public void onArticlesStored(List<Article> articles) {
+                    if (!articles.isEmpty()) {
+                        Platform.runLater(() -> refreshIfVisible(articles));
+                        if (imageCache != null) {
+                            imageCache.cacheImagesOf(articles);
+                        }
+                        if (contentFetcher != null) {
+                            contentFetcher.nudge();
+                        }
+                    }
+                }
+            });
+            feedScheduler.start();
+        }
+        System.out.println("Background services started.");
+    }
+
     @FXML
     private ToggleButton bookmarkToggleButton;
     @FXML
@@ -117,24 +208,40 @@ public class PrimaryController {
         if (selectedArticle != null) {
             boolean isNowBookmarked = bookmarkToggleButton.isSelected();
             selectedArticle.setBookmarked(isNowBookmarked);
-            DatabaseManager.getInstance().setBookmarkStatus(selectedArticle.getLink(), isNowBookmarked);
+            String link = selectedArticle.getLink();
+            background.execute(() -> {
+                DatabaseManager.getInstance().setBookmarkStatus(link, isNowBookmarked);
+                SearchManager.getInstance().setBookmarkStatus(link, isNowBookmarked);
+            });
             System.out.println("Article '" + selectedArticle.getTitle() + "' bookmark status set to: " + isNowBookmarked);
         }
     }
     // Add this new helper method to PrimaryController.java
     private void displayArticleContent(Article article) {
         if (article != null) {
-            String imageCss = "<style>img { max-width: 95%; height: auto; }</style>";
-            String darkModeCss = "";
-
             // Check if the dark mode toggle is currently selected
-            if (darkModeToggle.isSelected()) {
-                darkModeCss = "<style>body { background-color: #2b2b2b; color: #e0e0e0; }</style>";
+            ArticleRenderer.Theme theme = darkModeToggle.isSelected() ? ArticleRenderer.Theme.DARK : ArticleRenderer.Theme.LIGHT;
+
+            // Listings only carry summaries, so the page is prepared from the stored body,
+            // usually ahead of time by the prefetch below. On a miss it is prepared in the
+            // background and shown only if the article is still the one selected by then.
+            // Before startServices() has run there is no renderer yet; the render queued below waits for it.
+            ArticleRenderer articleRenderer = renderer;
+            String page = articleRenderer == null ? null : articleRenderer.getCached(article.getLink(), theme);
+            if (page != null) {
+                articleWebView.getEngine().loadContent(page);
+            } else {
+                articleWebView.getEngine().loadContent(ArticleRenderer.emptyPage(theme));
+                background.execute(() -> {
+                    String rendered = renderer.render(article.getLink(), theme);
+                    Platform.runLater(() -> {
+                        if (articleTableView.getSelectionModel().getSelectedItem() == article) {
+                            articleWebView.getEngine().loadContent(rendered);
+                        }
+                    });
+                });
             }
-
-            // Prepend all CSS to the article's description HTML
-            String htmlContent = imageCss + darkModeCss + article.getDescription();
-            articleWebView.getEngine().loadContent(htmlContent);
+            prefetchNeighbours(theme);
 
             // Also update the bookmark button's state
             bookmarkToggleButton.setSelected(article.isBookmarked());
@@ -146,6 +253,27 @@ public class PrimaryController {
             bookmarkToggleButton.setDisable(true);
         }
     }
+    // Prepares the articles just above and below the selection, nearest first.
+    private void prefetchNeighbours(ArticleRenderer.Theme theme) {
+        ArticleRenderer articleRenderer = renderer;
+        if (articleRenderer == null) {
+            return;
+        }
+        List<Article> items = articleTableView.getItems();
+        int selected = articleTableView.getSelectionModel().getSelectedIndex();
+        List<String> links = new ArrayList<>();
+        for (int distance = 1; distance <= prefetchNeighbours; distance++) {
+            for (int index : new int[]{selected + distance, selected - distance}) {
+                if (selected >= 0 && index >= 0 && index < items.size()) {
+                    links.add(items.get(index).getLink());
+                }
+            }
+        }
+        if (!links.isEmpty()) {
+            articleRenderer.prefetch(links, theme);
+        }
+    }
+
     @FXML
     private ToggleButton darkModeToggle;
     @FXML
@@ -168,18 +296,20 @@ public class PrimaryController {
         Article selectedArticle = articleTableView.getSelectionModel().getSelectedItem();
         displayArticleContent(selectedArticle);
     }
+    @FXML
+    private void handleShowStats() {
+        StatsWindow.show(articleTableView.getScene().getWindow());
+    }
+
     @FXML
     private void handleSearch() {
-        String query = searchField.getText();
-        if (query == null || query.trim().isEmpty()) {
-            // If the search bar is empty, just show the currently selected category
-            filterArticlesByCategory(categoryListView.getSelectionModel().getSelectedItem());
-            return;
-        }
+        // Results already follow the text as it is typed; Enter or the button just skips the pause.
+        System.out.println("Searching for: " + searchField.getText());
+        liveSearch.searchNow();
+    }
 
-        System.out.println("Searching for: " + query);
-        SearchManager searchManager = SearchManager.getInstance();
-        List<Article> searchResults = searchManager.search(query);
+    private void showSearchResults(List<Article> searchResults) {
+        articlePager.detach();
         articleTableView.getItems().setAll(searchResults);
         System.out.println("Found " + searchResults.size() + " results.");
     }
@@ -196,43 +326,66 @@ public class PrimaryController {
         new Thread(() -> {
 
             // --- This code runs on a background thread ---
-            RssFetcher fetcher = new RssFetcher();
-            List<Article> fetchedArticles = fetcher.fetchAllArticles();
-
-            DatabaseManager dbManager = DatabaseManager.getInstance();
-            SearchManager searchManager = SearchManager.getInstance();
-
-            for (Article article : fetchedArticles) {
-                dbManager.addArticle(article);
-                searchManager.indexArticle(article);
-            }
+            // Articles are stored and indexed feed by feed, so we refresh the view as each batch lands
+            // instead of waiting for the slowest feed.
+            IngestPipeline pipeline = new IngestPipeline(new RssFetcher(),
+                    DatabaseManager.getInstance(), SearchManager.getInstance());
+            pipeline.runAll(new IngestPipeline.Listener() {
+                @Override
+                public void onArticlesStored(List<Article> articles) {
+                    Platform.runLater(() -> refreshIfVisible(articles));
+                    if (imageCache != null) {
+                        imageCache.cacheImagesOf(articles);
+                    }
+                    if (contentFetcher != null) {
+                        contentFetcher.nudge();
+                    }
+                }
+            });
 
             // --- When the background task is done, update the UI on the JavaFX Application Thread ---
             Platform.runLater(() -> {
-                System.out.println("Fetching complete. Refreshing view.");
+                System.out.println("Fetching complete.");
 
                 // Re-enable the button and restore its text
                 fetchButton.setText("Fetch All Feeds");
                 fetchButton.setDisable(false);
-
-                // Refresh the currently viewed category to show any new articles
-                String selectedCategory = categoryListView.getSelectionModel().getSelectedItem();
-                filterArticlesByCategory(selectedCategory);
             });
 
         }).start(); // This starts the new thread
     }
 
-    /**
-     * A helper method to load all articles from the database and refresh the table.
-     */
-    private void loadAllArticles() {
-        System.out.println("Loading all articles from the database...");
-        DatabaseManager dbManager = DatabaseManager.getInstance();
-        List<Article> articles = dbManager.getAllArticles();
+    // Stops background work that writes to the database. Called when the application exits.
+    public void stop() {
+        // Let startup finish, and bookmark changes still queued reach the database before it closes.
+        background.shutdown();
+        try {
+            background.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (readApi != null) {
+            readApi.stop();
+        }
+        if (feedScheduler != null) {
+            feedScheduler.stop();
+        }
+        if (contentFetcher != null) {
+            contentFetcher.stop();
+        }
+        if (retention != null) {
+            retention.stop();
+        }
+        if (renderer != null) {
+            renderer.shutdown();
+        }
+    }
 
-        // The TableView is backed by an ObservableList. setAll clears the list and adds all new items.
-        articleTableView.getItems().setAll(articles);
-        System.out.println("Article table refreshed with " + articles.size() + " articles.");
+    // Merges newly stored articles into the current listing. Search results are left alone.
+    private void refreshIfVisible(List<Article> storedArticles) {
+        int inserted = articlePager.insert(storedArticles);
+        if (inserted > 0) {
+            System.out.println("Added " + inserted + " new articles to the listing.");
+        }
     }
 }
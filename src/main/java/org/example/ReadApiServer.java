@@ -0,0 +1,445 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small read-only JSON API over the local cache, so other tools on the machine can use
+ * it without the GUI. It listens on localhost only.
+ *
+ *   GET /api/categories
+ *   GET /api/articles?category=...&limit=50&after=...   (category omitted: all articles)
+ *   GET /api/bookmarks?limit=50&after=...
+ *   GET /api/article?link=...
+ *   GET /api/search?q=...&category=...&bookmarked=true&from=...&to=...&sort=recency&limit=50&after=...
+ *
+ * Lists come a page at a time; a response's "next" value, passed back as "after", fetches
+ * the following page. Every response carries an ETag made from the database and index
+ * versions, so a client that sends it back in If-None-Match gets a 304 without any query
+ * running until something has actually been written.
+ *
+ * Requests run on a fixed pool with a bounded queue. When the queue is full the server's
+ * own dispatcher thread runs the request, which stops it accepting more connections until
+ * the load drops.
+ */
+public class ReadApiServer {
+
+    // Distinguishes versions from different runs, since the counters restart at zero.
+    private static final String RUN_ID = Long.toString(System.currentTimeMillis(), 36);
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    private final DatabaseManager dbManager;
+    private final SearchManager searchManager;
+    private final Map<String, String> feeds;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public ReadApiServer(DatabaseManager dbManager, SearchManager searchManager, Map<String, String> feeds)
+            throws IOException {
+        AppSettings settings = AppSettings.getInstance();
+        this.dbManager = dbManager;
+        this.searchManager = searchManager;
+        this.feeds = feeds;
+        this.defaultPageSize = Math.max(1, settings.getInt("api.defaultPageSize", 50));
+        this.maxPageSize = Math.max(defaultPageSize, settings.getInt("api.maxPageSize", 500));
+        int threads = Math.max(1, settings.getInt("api.threads", Runtime.getRuntime().availableProcessors()));
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, settings.getInt("api.queueSize", 256))),
+                RssFetcher.daemonThreads("api"), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        // Responses are written as headers then body; without this, Nagle's algorithm holds the
+        // body back until the client's delayed ACK, adding tens of milliseconds per request.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        String host = settings.getString("api.host", "127.0.0.1");
+        server = HttpServer.create(new InetSocketAddress(host, settings.getInt("api.port", 7070)),
+                settings.getInt("api.backlog", 128));
+        server.setExecutor(executor);
+        server.createContext("/api/categories", handler(this::categories));
+        server.createContext("/api/articles", handler(query -> listing(articleFilter(query), query)));
+        server.createContext("/api/bookmarks", handler(query -> listing(ArticleFilter.bookmarked(), query)));
+        server.createContext("/api/article", handler(this::article));
+        server.createContext("/api/search", handler(this::search));
+    }
+
+    /**
+     * Starts the API if api.enabled is set, and returns it; returns null if it is disabled
+     * or the port can't be bound, which leaves the rest of the application unaffected.
+     */
+    public static ReadApiServer startIfEnabled(DatabaseManager dbManager, SearchManager searchManager,
+                                               Map<String, String> feeds) {
+        if (!AppSettings.getInstance().getBoolean("api.enabled", false)) {
+            return null;
+        }
+        try {
+            ReadApiServer api = new ReadApiServer(dbManager, searchManager, feeds);
+            api.start();
+            return api;
+        } catch (IOException e) {
+            System.err.println("Could not start the read API: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Read API listening on http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/api/");
+    }
+
+    // Stops accepting requests, gives running ones a moment to finish, and frees the port.
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // A handled request's outcome: the status and, unless it is 304, a JSON body.
+    private static class Response {
+        final int status;
+        final String json;
+
+        Response(int status, String json) {
+            this.status = status;
+            this.json = json;
+        }
+
+        static Response ok(String json) {
+            return new Response(200, json);
+        }
+
+        static Response error(int status, String message) {
+            return new Response(status, "{\"error\":" + quote(message) + "}");
+        }
+    }
+
+    private interface Endpoint {
+        Response handle(Map<String, String> query);
+    }
+
+    private static class BadRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    // Wraps an endpoint with method checks, ETag revalidation and error handling.
+    private HttpHandler handler(Endpoint endpoint) {
+        return exchange -> {
+            try {
+                // Contexts match by prefix; only the exact paths are endpoints.
+                if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                    send(exchange, Response.error(404, "No such endpoint"), null);
+                    return;
+                }
+                if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                    send(exchange, Response.error(405, "Only GET is supported"), null);
+                    return;
+                }
+                // Taken before the work, so a write during the request makes the next ETag differ.
+                String etag = currentETag();
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    send(exchange, new Response(304, null), etag);
+                    return;
+                }
+                Response response;
+                try {
+                    response = endpoint.handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+                } catch (BadRequestException e) {
+                    response = Response.error(400, e.getMessage());
+                }
+                send(exchange, response, response.status == 200 ? etag : null);
+            } catch (RuntimeException e) {
+                System.err.println("Read API error on " + exchange.getRequestURI() + ": " + e);
+                send(exchange, Response.error(500, "Internal error"), null);
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private String currentETag() {
+        return "\"" + RUN_ID + "-" + dbManager.getDataVersion() + "-" + searchManager.getIndexVersion() + "\"";
+    }
+
+    private static void send(HttpExchange exchange, Response response, String etag) throws IOException {
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        }
+        if (response.json == null || "HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+        byte[] body = response.json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // --- Endpoints ---
+
+    private Response categories(Map<String, String> query) {
+        StringBuilder json = new StringBuilder("{\"categories\":[");
+        boolean first = true;
+        for (Map.Entry<String, String> feed : feeds.entrySet()) {
+            json.append(first ? "" : ",").append("{\"name\":").append(quote(feed.getKey()))
+                    .append(",\"feed\":").append(quote(feed.getValue())).append('}');
+            first = false;
+        }
+        return Response.ok(json.append("]}").toString());
+    }
+
+    private static ArticleFilter articleFilter(Map<String, String> query) {
+        String category = query.get("category");
+        return category == null || category.isEmpty() ? ArticleFilter.all() : ArticleFilter.category(category);
+    }
+
+    private Response listing(ArticleFilter filter, Map<String, String> query) {
+        int limit = pageSize(query);
+        Article after = decodeListingCursor(query.get("after"));
+        // One extra row tells us whether there is a next page.
+        List<Article> rows = dbManager.getArticlesPage(filter, after, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<Article> page = hasMore ? rows.subList(0, limit) : rows;
+        String next = hasMore ? encodeListingCursor(page.get(page.size() - 1)) : null;
+        return Response.ok(articleList(page, next, -1));
+    }
+
+    private Response article(Map<String, String> query) {
+        String link = query.get("link");
+        if (link == null || link.isEmpty()) {
+            throw new BadRequestException("link is required");
+        }
+        Article article = dbManager.getArticleByLink(link);
+        if (article == null) {
+            return Response.error(404, "No article with that link");
+        }
+        StringBuilder json = new StringBuilder();
+        appendArticle(json, article);
+        json.setLength(json.length() - 1);
+        json.append(",\"description\":").append(quote(article.getDescription())).append('}');
+        return Response.ok(json.toString());
+    }
+
+    private Response search(Map<String, String> query) {
+        SearchQuery searchQuery = new SearchQuery(query.get("q"))
+                .category(emptyToNull(query.get("category")))
+                .bookmarkedOnly(Boolean.parseBoolean(query.get("bookmarked")))
+                .publishedBetween(parseLong(query, "from"), parseLong(query, "to"))
+                .sortBy("recency".equalsIgnoreCase(query.get("sort")) ? SearchQuery.Sort.RECENCY : SearchQuery.Sort.RELEVANCE)
+                .pageSize(pageSize(query));
+        String after = query.get("after");
+        if (after != null && !after.isEmpty()) {
+            searchQuery.after(decodeSearchCursor(after));
+        }
+        SearchPage page;
+        try {
+            page = searchManager.search(searchQuery);
+        } catch (SearchManager.StaleCursorException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        String next = page.hasMore() ? encodeSearchCursor(page) : null;
+        return Response.ok(articleList(page.getArticles(), next, page.getTotalHits()));
+    }
+
+    // --- Paging cursors ---
+    // Opaque to clients: base64 of the position of the last row they were given.
+
+    private static String encodeListingCursor(Article last) {
+        return encode(last.getPublishedAt() + "\n" + last.getLink());
+    }
+
+    private static Article decodeListingCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String[] parts = decode(cursor).split("\n", 2);
+        if (parts.length != 2) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        Article after = new Article();
+        after.setPublishedAt(parseLong(parts[0]));
+        after.setLink(parts[1]);
+        return after;
+    }
+
+    /**
+     * A recency position is the last hit's pubDate and link, like a listing cursor, and
+     * holds however the index changes. A relevance position is a score and a Lucene doc ID,
+     * which only mean something to the index version they came from, so that version goes
+     * in too; SearchManager reads the next page from that version while it keeps it.
+     */
+    private static String encodeSearchCursor(SearchPage page) {
+        ScoreDoc last = page.getLastHit();
+        if (last instanceof FieldDoc) {
+            Object[] fields = ((FieldDoc) last).fields;
+            String link = fields[1] == null ? "" : ((BytesRef) fields[1]).utf8ToString();
+            return encode("d\n" + fields[0] + "\n" + link);
+        }
+        return encode("s\n" + page.getReaderVersion() + "\n" + last.doc + "\n" + Float.floatToIntBits(last.score));
+    }
+
+    private static SearchPage decodeSearchCursor(String cursor) {
+        String[] parts = decode(cursor).split("\n", 4);
+        if (parts.length == 3 && parts[0].equals("d")) {
+            // No link: the hit was indexed before links were kept for sorting.
+            BytesRef link = parts[2].isEmpty() ? null : new BytesRef(parts[2]);
+            FieldDoc after = new FieldDoc(0, Float.NaN, new Object[]{parseLong(parts[1]), link});
+            return new SearchPage(Collections.emptyList(), 0, after, true, -1);
+        }
+        if (parts.length == 4 && parts[0].equals("s")) {
+            ScoreDoc after = new ScoreDoc((int) parseLong(parts[2]), Float.intBitsToFloat((int) parseLong(parts[3])));
+            return new SearchPage(Collections.emptyList(), 0, after, true, parseLong(parts[1]));
+        }
+        throw new BadRequestException("Invalid cursor");
+    }
+
+    private static String encode(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    // --- Request parsing ---
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            try {
+                params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Malformed query string");
+            }
+        }
+        return params;
+    }
+
+    private int pageSize(Map<String, String> query) {
+        Long limit = parseLong(query, "limit");
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new BadRequestException("limit must be positive");
+        }
+        return (int) Math.min(limit, maxPageSize);
+    }
+
+    private static Long parseLong(Map<String, String> query, String name) {
+        String value = query.get(name);
+        return value == null || value.isEmpty() ? null : parseLong(value);
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Not a number: " + value);
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    // --- JSON ---
+
+    private static String articleList(List<Article> articles, String next, long totalHits) {
+        StringBuilder json = new StringBuilder(64 + articles.size() * 256).append("{\"articles\":[");
+        for (int i = 0; i < articles.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendArticle(json, articles.get(i));
+        }
+        json.append("],\"next\":").append(next == null ? "null" : quote(next));
+        if (totalHits >= 0) {
+            json.append(",\"totalHits\":").append(totalHits);
+        }
+        return json.append('}').toString();
+    }
+
+    private static void appendArticle(StringBuilder json, Article article) {
+        json.append("{\"link\":").append(quote(article.getLink()))
+                .append(",\"title\":").append(quote(article.getTitle()))
+                .append(",\"category\":").append(quote(article.getCategory()))
+                .append(",\"publishedAt\":").append(article.getPublishedAt())
+                .append(",\"bookmarked\":").append(article.isBookmarked())
+                .append('}');
+    }
+
+    static String quote(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder out = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+}
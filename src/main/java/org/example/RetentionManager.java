@@ -0,0 +1,218 @@
+package org.example;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps NewsCache.db and lucene-index from growing without bound. Every intervalMinutes,
+ * on a low-priority background thread, it:
+ *
+ *   1. deletes articles older than retention.maxAgeDays, or retention.maxAgeDays.<category>
+ *      for a category of its own (0 keeps them forever);
+ *   2. deletes the oldest articles beyond retention.maxArticles, then beyond
+ *      retention.maxBytes of database (0 for no limit);
+ *   3. retires the near-duplicate aliases of deleted articles to deleted_links, and
+ *      forgets deleted links older than retention.tombstoneDays;
+ *   4. hands free database pages back to the file system with an incremental vacuum;
+ *   5. merges away deleted documents in the search index.
+ *
+ * Bookmarked articles are never deleted. Deletes go in batches of batchSize, each one its
+ * own transaction followed by the matching index deletes, with a short pause in between,
+ * so ingestion and the UI never wait long for the writer.
+ */
+public class RetentionManager {
+
+    private final DatabaseManager dbManager;
+    private final SearchManager searchManager;
+    private final ScheduledExecutorService executor;
+
+    private final long intervalMinutes;
+    private final int maxAgeDays;
+    private final long maxArticles;
+    private final long maxBytes;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final int vacuumPages;
+    private final long tombstoneMillis;
+
+    public RetentionManager(DatabaseManager dbManager, SearchManager searchManager) {
+        AppSettings settings = AppSettings.getInstance();
+        this.dbManager = dbManager;
+        this.searchManager = searchManager;
+        this.intervalMinutes = Math.max(1, settings.getLong("retention.intervalMinutes", 60));
+        this.maxAgeDays = Math.max(0, settings.getInt("retention.maxAgeDays", 90));
+        this.maxArticles = Math.max(0, settings.getLong("retention.maxArticles", 0));
+        this.maxBytes = Math.max(0, settings.getLong("retention.maxBytes", 0));
+        this.batchSize = Math.max(1, settings.getInt("retention.batchSize", 500));
+        this.pauseMillis = Math.max(0, settings.getLong("retention.pauseMs", 50));
+        this.vacuumPages = Math.max(1, settings.getInt("retention.vacuumPages", 1024));
+        this.tombstoneMillis = TimeUnit.DAYS.toMillis(Math.max(1, settings.getLong("retention.tombstoneDays", 90)));
+        ThreadFactory threads = RssFetcher.daemonThreads("retention");
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = threads.newThread(runnable);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    // Creates a manager and schedules its runs, or returns null if retention.enabled is false.
+    public static RetentionManager startIfEnabled(DatabaseManager dbManager, SearchManager searchManager) {
+        if (!AppSettings.getInstance().getBoolean("retention.enabled", true)) {
+            return null;
+        }
+        RetentionManager retention = new RetentionManager(dbManager, searchManager);
+        retention.start();
+        return retention;
+    }
+
+    // The first run comes a few minutes after startup, out of the way of the initial refresh.
+    public void start() {
+        long initialDelay = Math.max(0, AppSettings.getInstance().getLong("retention.initialDelayMinutes", 5));
+        executor.scheduleWithFixedDelay(this::runSafely, initialDelay, intervalMinutes, TimeUnit.MINUTES);
+        System.out.println("Retention scheduled every " + intervalMinutes + " min.");
+    }
+
+    // Stops scheduling runs and waits for one in progress to reach the end of its current batch.
+    public void stop() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("Retention: run still in progress after 30 s; leaving it.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            System.err.println("Retention run failed: " + e);
+        }
+    }
+
+    // Applies every policy once, then compacts. Returns how many articles were deleted.
+    public long runOnce() {
+        long start = System.nanoTime();
+        long byAge = expireByAge();
+        long byCount = 0;
+        if (maxArticles > 0) {
+            long excess = dbManager.countUnbookmarkedArticles() - maxArticles;
+            while (excess > 0 && !Thread.currentThread().isInterrupted()) {
+                int deleted = deleteBatch(dbManager.deleteOldestArticles((int) Math.min(batchSize, excess)));
+                if (deleted == 0) {
+                    break;
+                }
+                byCount += deleted;
+                excess -= deleted;
+            }
+        }
+        long bySize = 0;
+        if (maxBytes > 0 && canReachMaxBytes()) {
+            // Freed pages stay in the file until the vacuum, but no longer count as used.
+            while (dbManager.getUsedBytes() > maxBytes && !Thread.currentThread().isInterrupted()) {
+                int deleted = deleteBatch(dbManager.deleteOldestArticles(batchSize));
+                if (deleted == 0) {
+                    break;
+                }
+                bySize += deleted;
+            }
+        }
+        dbManager.pruneDeletedLinks(System.currentTimeMillis() - tombstoneMillis);
+        long freedPages = vacuum();
+        long deleted = byAge + byCount + bySize;
+        if (deleted > 0) {
+            searchManager.compact();
+        }
+        System.out.println("Retention: deleted " + deleted + " articles (" + byAge + " by age, " + byCount
+                + " by count, " + bySize + " by size), released " + freedPages + " database pages in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return deleted;
+    }
+
+    /**
+     * Whether deleting articles can bring the database under maxBytes at all. Bookmarks,
+     * aliases, tombstones and cached image records take space too; when they alone exceed
+     * the limit, deleting by size would empty the store and still miss it.
+     */
+    private boolean canReachMaxBytes() {
+        long used = dbManager.getUsedBytes();
+        if (used <= maxBytes) {
+            return true;
+        }
+        long kept = used - dbManager.getDeletableBytes();
+        if (kept <= maxBytes) {
+            return true;
+        }
+        System.err.println("Retention: about " + kept / 1024 + " KB of the database is data that deleting articles"
+                + " can't free, more than retention.maxBytes (" + maxBytes / 1024 + " KB); not deleting by size.");
+        return false;
+    }
+
+    private long expireByAge() {
+        AppSettings settings = AppSettings.getInstance();
+        long now = System.currentTimeMillis();
+        long deleted = 0;
+        for (String category : dbManager.getStoredCategories()) {
+            int days = Math.max(0, settings.getInt("retention.maxAgeDays." + category, maxAgeDays));
+            if (days == 0) {
+                continue;
+            }
+            long cutoff = now - TimeUnit.DAYS.toMillis(days);
+            while (!Thread.currentThread().isInterrupted()) {
+                int batch = deleteBatch(dbManager.deleteArticlesOlderThan(category, cutoff, batchSize));
+                deleted += batch;
+                if (batch < batchSize) {
+                    break;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Removes a batch the database has just deleted from the search index, then pauses so
+     * other writers get a turn. Holding the index's sync lock keeps an IndexSync catch-up that
+     * read these rows a moment earlier from indexing them again afterwards.
+     */
+    private int deleteBatch(List<String> links) {
+        if (links.isEmpty()) {
+            return 0;
+        }
+        synchronized (searchManager.getSyncLock()) {
+            searchManager.deleteArticles(links);
+        }
+        pause();
+        return links.size();
+    }
+
+    // Releases free pages a few at a time, pausing between steps.
+    private long vacuum() {
+        long freed = 0;
+        int step;
+        while ((step = dbManager.incrementalVacuum(vacuumPages)) > 0) {
+            freed += step;
+            if (!pause()) {
+                break;
+            }
+        }
+        return freed;
+    }
+
+    private boolean pause() {
+        if (pauseMillis == 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
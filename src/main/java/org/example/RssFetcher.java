@@ -1,18 +1,67 @@
 package org.example;
 
+import com.rometools.rome.feed.module.SyModule;
+import com.rometools.rome.feed.rss.Channel;
 import com.rometools.rome.feed.synd.SyndEntry;
 import com.rometools.rome.feed.synd.SyndFeed;
+import com.rometools.rome.io.FeedException;
 import com.rometools.rome.io.SyndFeedInput;
 import com.rometools.rome.io.XmlReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 public class RssFetcher {
 
+    private final int maxParallelFetches;
+    private final int maxFetchesPerHost;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+    private final int feedDeadlineMs;
+
+    // One permit pool per host, shared by every download this fetcher makes.
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    // Enforces the hard per-feed deadline by closing connections that overrun it.
+    private static final ScheduledExecutorService WATCHDOG =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("feed-watchdog"));
+
+    public RssFetcher() {
+        AppSettings settings = AppSettings.getInstance();
+        this.maxParallelFetches = Math.max(1, settings.getInt("fetch.maxParallel", 8));
+        this.maxFetchesPerHost = Math.max(1, settings.getInt("fetch.maxPerHost", 2));
+        this.connectTimeoutMs = settings.getInt("fetch.connectTimeoutMs", 5000);
+        this.readTimeoutMs = settings.getInt("fetch.readTimeoutMs", 10000);
+        this.feedDeadlineMs = settings.getInt("fetch.feedDeadlineMs", 30000);
+    }
+
+    public RssFetcher(int maxParallelFetches, int maxFetchesPerHost, int connectTimeoutMs, int readTimeoutMs, int feedDeadlineMs) {
+        this.maxParallelFetches = Math.max(1, maxParallelFetches);
+        this.maxFetchesPerHost = Math.max(1, maxFetchesPerHost);
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.feedDeadlineMs = feedDeadlineMs;
+    }
+
     // Method to load the properties file from the resources folder.
     private Properties loadFeedProperties() {
         Properties properties = new Properties();
@@ -33,46 +82,213 @@ public class RssFetcher {
     public Properties getFeedProperties() {
         return loadFeedProperties();
     }
-    // Main method to fetch and parse all feeds listed in the properties file.
-    public List<Article> fetchAllArticles() {
-        List<Article> allArticles = new ArrayList<>();
-        Properties feedProperties = loadFeedProperties();
 
+    // The feeds from feeds.properties as category -> url.
+    public Map<String, String> getFeeds() {
+        Properties feedProperties = loadFeedProperties();
+        Map<String, String> feeds = new LinkedHashMap<>();
         for (String category : feedProperties.stringPropertyNames()) {
-            String url = feedProperties.getProperty(category);
-            // This is inside the fetchAllArticles() method's for loop
-            try {
-                System.out.println("Fetching from: " + url);
-                URL feedUrl = new URL(url);
-
-                // --- ADD THIS CODE ---
-                // Set a User-Agent to pretend we are a browser
-                java.net.HttpURLConnection httpcon = (java.net.HttpURLConnection) feedUrl.openConnection();
-                httpcon.addRequestProperty("User-Agent", "Mozilla/5.0");
-                // --- END OF ADDED CODE ---
-
-                SyndFeedInput input = new SyndFeedInput();
-                // Now, build the feed from our custom connection
-                SyndFeed feed = input.build(new XmlReader(httpcon));
-
-                for (SyndEntry entry : feed.getEntries()) {
-                    Article article = new Article();
-                    article.setTitle(entry.getTitle());
-                    article.setLink(entry.getLink());
-                    if (entry.getDescription() != null) {
-                        article.setDescription(entry.getDescription().getValue());
-                    }
-                    if (entry.getPublishedDate() != null) {
-                        article.setPubDate(entry.getPublishedDate().toString());
-                    }
-                    article.setCategory(category);
-                    allArticles.add(article);
-                }
-            } catch (Exception e) {
-                System.err.println("Error fetching or parsing feed from " + url + ": " + e.getMessage());
+            feeds.put(category, feedProperties.getProperty(category));
+        }
+        return feeds;
+    }
+
+    /**
+     * Downloads one feed, honouring the per-host limit and the feed deadline. Never throws:
+     * feeds that are unchanged or fail come back already finished, and only feeds with new
+     * content carry a body to parse. The caller saves the new validators once it has stored
+     * the articles.
+     */
+    public FeedDownload download(String category, String url) {
+        long start = System.nanoTime();
+        FeedStats stats = Metrics.getInstance().feed(category);
+        Semaphore permit = null;
+        ScheduledFuture<?> deadline = null;
+        int responseCode = 0;
+        try {
+            System.out.println("Fetching from: " + url);
+            URL feedUrl = new URL(url);
+            Semaphore hostPermit = hostPermits.computeIfAbsent(feedUrl.getHost(), host -> new Semaphore(maxFetchesPerHost, true));
+            hostPermit.acquire();
+            permit = hostPermit;
+
+            DatabaseManager dbManager = DatabaseManager.getInstance();
+            FeedState previous = dbManager.getFeedState(url);
+
+            HttpURLConnection httpcon = (HttpURLConnection) feedUrl.openConnection();
+            // Set a User-Agent to pretend we are a browser
+            httpcon.addRequestProperty("User-Agent", "Mozilla/5.0");
+            httpcon.addRequestProperty("Accept-Encoding", "gzip");
+            // Ask the server to answer 304 if the feed hasn't changed since our last fetch.
+            if (previous != null && previous.getEtag() != null) {
+                httpcon.addRequestProperty("If-None-Match", previous.getEtag());
+            }
+            if (previous != null && previous.getLastModified() != null) {
+                httpcon.addRequestProperty("If-Modified-Since", previous.getLastModified());
+            }
+            httpcon.setConnectTimeout(connectTimeoutMs);
+            httpcon.setReadTimeout(readTimeoutMs);
+            // The socket timeouts only bound each individual read, so a server that trickles
+            // bytes could still stall us. Closing the connection from the watchdog enforces
+            // a hard limit on the whole download.
+            deadline = WATCHDOG.schedule(httpcon::disconnect, feedDeadlineMs, TimeUnit.MILLISECONDS);
+
+            responseCode = httpcon.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                stats.recordFetch(System.nanoTime() - start, responseCode, 0, false);
+                long elapsed = elapsedMillis(start);
+                System.out.println("Feed " + category + " not modified (" + elapsed + " ms)");
+                return FeedDownload.finished(FeedResult.unchanged(FeedResult.Status.NOT_MODIFIED, category, url, elapsed));
+            }
+            if (responseCode >= 400) {
+                throw new IOException("HTTP " + responseCode);
+            }
+            byte[] body = readBody(httpcon);
+            FeedState current = new FeedState(url, httpcon.getHeaderField("ETag"),
+                    httpcon.getHeaderField("Last-Modified"), sha256(body));
+
+            // Some servers ignore conditional requests but still serve identical bytes.
+            if (previous != null && current.getBodyHash().equals(previous.getBodyHash())) {
+                stats.recordFetch(System.nanoTime() - start, responseCode, body.length, false);
+                dbManager.saveFeedState(current);
+                long elapsed = elapsedMillis(start);
+                System.out.println("Feed " + category + " unchanged (" + elapsed + " ms)");
+                return FeedDownload.finished(FeedResult.unchanged(FeedResult.Status.UNCHANGED, category, url, elapsed));
+            }
+            stats.recordFetch(System.nanoTime() - start, responseCode, body.length, true);
+            return FeedDownload.of(category, url, body, httpcon.getContentType(), current, start);
+        } catch (Exception e) {
+            String reason = deadline != null && deadline.isDone() && !deadline.isCancelled()
+                    ? "deadline of " + feedDeadlineMs + " ms exceeded"
+                    : e.toString();
+            stats.recordFailure(System.nanoTime() - start, responseCode, reason);
+            System.err.println("Error fetching feed from " + url + ": " + reason);
+            return FeedDownload.finished(FeedResult.failure(category, url, reason, elapsedMillis(start)));
+        } finally {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            if (permit != null) {
+                permit.release();
+            }
+        }
+    }
+
+    // Parses a downloaded feed. CPU-only, so it can run on a different pool than the downloads.
+    public FeedResult parse(FeedDownload download) {
+        String category = download.getCategory();
+        try {
+            long parseStart = System.nanoTime();
+            SyndFeed feed = readFeed(download.getBody(), download.getContentType());
+            List<Article> articles = toArticles(category, feed);
+            Metrics.getInstance().feed(category).recordParse(System.nanoTime() - parseStart, articles.size());
+            long elapsed = elapsedMillis(download.getStartNanos());
+            System.out.println("Fetched " + articles.size() + " articles from " + category + " in " + elapsed + " ms");
+            return FeedResult.success(category, download.getUrl(), articles, refreshHintMillis(feed), elapsed);
+        } catch (Exception e) {
+            System.err.println("Error parsing feed from " + download.getUrl() + ": " + e);
+            return FeedResult.failure(category, download.getUrl(), e.toString(), elapsedMillis(download.getStartNanos()));
+        }
+    }
+
+    public int getMaxParallelFetches() {
+        return maxParallelFetches;
+    }
+
+    private static byte[] readBody(HttpURLConnection httpcon) throws IOException {
+        try (InputStream raw = httpcon.getInputStream();
+             InputStream in = "gzip".equalsIgnoreCase(httpcon.getContentEncoding()) ? new GZIPInputStream(raw) : raw) {
+            return in.readAllBytes();
+        }
+    }
+
+    static SyndFeed readFeed(byte[] body, String contentType) throws IOException, FeedException {
+        InputStream stream = new ByteArrayInputStream(body);
+        XmlReader reader = contentType != null ? new XmlReader(stream, contentType, true) : new XmlReader(stream, true);
+        SyndFeedInput input = new SyndFeedInput();
+        // Keeps the RSS channel around so its ttl can be read.
+        input.setPreserveWireFeed(true);
+        return input.build(reader);
+    }
+
+    /**
+     * The polling interval the feed asks for: RSS 2.0 ttl (minutes), or the syndication
+     * module's updatePeriod divided by updateFrequency. 0 if the feed gives neither.
+     */
+    private static long refreshHintMillis(SyndFeed feed) {
+        if (feed.originalWireFeed() instanceof Channel) {
+            int ttl = ((Channel) feed.originalWireFeed()).getTtl();
+            if (ttl > 0) {
+                return TimeUnit.MINUTES.toMillis(ttl);
+            }
+        }
+        SyModule sy = (SyModule) feed.getModule(SyModule.URI);
+        if (sy != null && sy.getUpdatePeriod() != null) {
+            long period;
+            switch (sy.getUpdatePeriod()) {
+                case SyModule.HOURLY:
+                    period = TimeUnit.HOURS.toMillis(1);
+                    break;
+                case SyModule.DAILY:
+                    period = TimeUnit.DAYS.toMillis(1);
+                    break;
+                case SyModule.WEEKLY:
+                    period = TimeUnit.DAYS.toMillis(7);
+                    break;
+                case SyModule.MONTHLY:
+                    period = TimeUnit.DAYS.toMillis(30);
+                    break;
+                case SyModule.YEARLY:
+                    period = TimeUnit.DAYS.toMillis(365);
+                    break;
+                default:
+                    return 0;
             }
+            return period / Math.max(1, sy.getUpdateFrequency());
         }
-        System.out.println("Fetched a total of " + allArticles.size() + " articles.");
-        return allArticles;
+        return 0;
+    }
+
+    // Turns a parsed feed into Articles tagged with the feed's category.
+    static List<Article> toArticles(String category, SyndFeed feed) {
+        List<Article> articles = new ArrayList<>();
+        for (SyndEntry entry : feed.getEntries()) {
+            Article article = new Article();
+            article.setTitle(entry.getTitle());
+            article.setLink(entry.getLink());
+            if (entry.getDescription() != null) {
+                article.setDescription(entry.getDescription().getValue());
+            }
+            if (entry.getPublishedDate() != null) {
+                article.setPublishedAt(entry.getPublishedDate().getTime());
+            } else if (entry.getUpdatedDate() != null) {
+                article.setPublishedAt(entry.getUpdatedDate().getTime());
+            }
+            article.setCategory(category);
+            articles.add(article);
+        }
+        return articles;
+    }
+
+    private static String sha256(byte[] body) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 }
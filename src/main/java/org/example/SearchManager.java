@@ -1,31 +1,209 @@
 package org.example;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherLifetimeManager;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.*;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexFormatTooNewException;
+import org.apache.lucene.index.IndexFormatTooOldException;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
-import java.nio.file.Paths;
+import java.io.UncheckedIOException;
 import java.util.List;
 
+/**
+ * Full-text search over the stored articles.
+ *
+ * One IndexWriter stays open for the life of the app and every indexing call goes through
+ * it, so adding an article is an in-memory operation rather than a commit. Searches use
+ * near-real-time readers from a SearcherManager, which a background task refreshes a few
+ * times a second; the same task commits pending changes to disk every few seconds, or
+ * sooner once enough documents have piled up.
+ */
 public class SearchManager {
-    // We'll store the Lucene index in a folder named "lucene-index"
+    // We'll store the Lucene index in a folder named "lucene-index" in the data directory
     private static final String INDEX_DIR = "lucene-index";
     private static SearchManager instance;
 
-    private SearchManager() {}
+    /**
+     * Thrown when a relevance-sorted search continues from a page whose searcher has been
+     * let go, search.cursorMaxAgeSeconds after the index moved on. The search has to start
+     * again from the first page.
+     */
+    public static class StaleCursorException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StaleCursorException() {
+            super("The search has expired; start it again");
+        }
+    }
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    // How much a match in each field counts towards relevance.
+    private final Map<String, Float> fieldBoosts = new HashMap<>();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    // Searchers that relevance pages were read from, kept so the next page reads the same one.
+    private final SearcherLifetimeManager cursorSearchers = new SearcherLifetimeManager();
+    private final double cursorMaxAgeSeconds;
+    private final TitleSuggester suggester;
+    private final ScheduledExecutorService maintenance =
+            Executors.newSingleThreadScheduledExecutor(RssFetcher.daemonThreads("search-maintenance"));
+
+    // Key of the sync checkpoint in the commit user data.
+    private static final String SEQ_KEY = "seq";
+
+    // Every article with a database seq up to this one is in the index.
+    private volatile long indexedSeq;
+
+    // Held while the index is brought in step with the database; see getSyncLock().
+    private final Object syncLock = new Object();
+
+    // Latency of indexing, index maintenance and searches; see Metrics.
+    private final LatencyHistogram updateTimer = Metrics.getInstance().timer("index.update");
+    private final LatencyHistogram refreshTimer = Metrics.getInstance().timer("index.refresh");
+    private final LatencyHistogram commitTimer = Metrics.getInstance().timer("index.commit");
+    private final LatencyHistogram searchTimer = Metrics.getInstance().timer("search.query");
+    private final LatencyHistogram suggestTimer = Metrics.getInstance().timer("search.suggest");
+    private final LatencyHistogram compactTimer = Metrics.getInstance().timer("index.compact");
+
+    // Documents added or updated since the last commit.
+    private final AtomicInteger uncommittedDocs = new AtomicInteger();
+
+    // Set when articles are deleted; their titles stay in the suggester until compact() rebuilds it.
+    private volatile boolean suggestionsStale;
+    private final int commitEveryDocs;
+
+    // First pages of recent searches, valid for the reader version they were computed on.
+    private final LinkedHashMap<SearchQuery, SearchPage> recentResults;
+    private long recentResultsVersion = -1;
+
+    private SearchManager() {
+        AppSettings settings = AppSettings.getInstance();
+        this.commitEveryDocs = Math.max(1, settings.getInt("index.commitDocs", 5000));
+        fieldBoosts.put("title", (float) Math.max(0, settings.getDouble("search.titleBoost", 2.0)));
+        fieldBoosts.put("description", (float) Math.max(0, settings.getDouble("search.descriptionBoost", 1.0)));
+        fieldBoosts.put("content", (float) Math.max(0, settings.getDouble("search.contentBoost", 0.5)));
+        this.cursorMaxAgeSeconds = Math.max(1, settings.getLong("search.cursorMaxAgeSeconds", 300));
+        int cachedSearches = Math.max(0, settings.getInt("search.cachedQueries", 64));
+        recentResults = new LinkedHashMap<SearchQuery, SearchPage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SearchQuery, SearchPage> eldest) {
+                return size() > cachedSearches;
+            }
+        };
+        try {
+            directory = FSDirectory.open(settings.dataPath(INDEX_DIR));
+            writer = openWriter(directory, settings);
+            // applyAllDeletes = true so updated articles never show up twice in results.
+            searcherManager = new SearcherManager(writer, true, true, null);
+            suggester = new TitleSuggester(analyzer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error opening the search index: " + e.getMessage(), e);
+        }
+        indexedSeq = readIndexedSeq(writer);
+        if (suggester.isEmpty() && writer.getDocStats().numDocs > 0) {
+            // First start with suggestions: fill them from the titles already in the index.
+            RssFetcher.daemonThreads("suggest-build").newThread(this::buildSuggester).start();
+        }
+
+        long refreshMs = Math.max(10, settings.getLong("index.refreshMs", 500));
+        long commitMs = Math.max(refreshMs, settings.getLong("index.commitMs", 5000));
+        maintenance.scheduleWithFixedDelay(this::refresh, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::commit, commitMs, commitMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the writer on the existing index, or on a fresh, empty one if the existing
+     * index is corrupt or in a format this Lucene can't read. An empty index has no sync
+     * checkpoint, so IndexSync rebuilds it from the database. Any other failure (the lock
+     * held by another process, a full disk, too many open files) may be transient and is
+     * rethrown, leaving the index alone.
+     */
+    private IndexWriter openWriter(Directory dir, AppSettings settings) throws IOException {
+        try {
+            return new IndexWriter(dir, writerConfig(settings, IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        } catch (CorruptIndexException | IndexFormatTooOldException | IndexFormatTooNewException e) {
+            System.err.println("Search index is unreadable, starting a new one: " + e);
+            // Even CREATE mode reads the old commit point, so clear the directory first.
+            for (String file : dir.listAll()) {
+                dir.deleteFile(file);
+            }
+            return new IndexWriter(dir, writerConfig(settings, IndexWriterConfig.OpenMode.CREATE));
+        }
+    }
+
+    private IndexWriterConfig writerConfig(AppSettings settings, IndexWriterConfig.OpenMode openMode) {
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setOpenMode(openMode);
+        config.setRAMBufferSizeMB(settings.getInt("index.ramBufferMb", 32));
+        return config;
+    }
+
+    // The sync checkpoint saved with the last commit, or 0 if there is none.
+    private static long readIndexedSeq(IndexWriter writer) {
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (SEQ_KEY.equals(entry.getKey())) {
+                    return Long.parseLong(entry.getValue());
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void buildSuggester() {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                suggester.build(searcher.getIndexReader());
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading the search index for suggestions: " + e.getMessage());
+        }
+    }
 
     public static synchronized SearchManager getInstance() {
         if (instance == null) {
@@ -34,57 +212,428 @@ public class SearchManager {
         return instance;
     }
 
+    // Commits and closes the index. Called once when the application shuts down.
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
     public void indexArticle(Article article) {
-        // Create the configuration object first.
-        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        indexArticles(Collections.singletonList(article));
+    }
 
-        // Now, the try-with-resources block only contains objects that need to be closed.
-        try (Directory dir = FSDirectory.open(Paths.get(INDEX_DIR));
-             IndexWriter writer = new IndexWriter(dir, config)) { // We use the config object here
+    /**
+     * Adds or replaces the given articles in the index. The changes are searchable after
+     * the next background refresh and durable after the next commit. Throws
+     * UncheckedIOException if the index can't be written.
+     */
+    public void indexArticles(Collection<Article> articles) {
+        long start = System.nanoTime();
+        try {
+            for (Article article : articles) {
+                // updateDocument will replace an existing article with the same link,
+                // or add it if it's new.
+                writer.updateDocument(new Term("link", article.getLink()), toDocument(article));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error indexing " + articles.size() + " articles", e);
+        }
+        suggester.add(articles);
+        updateTimer.recordSince(start);
+        if (uncommittedDocs.addAndGet(articles.size()) >= commitEveryDocs) {
+            maintenance.execute(this::commit);
+        }
+    }
 
-            // Create a Lucene Document from our Article object
-            Document doc = new Document();
-            // We store the link so we can identify the article later
-            doc.add(new StringField("link", article.getLink(), Field.Store.YES));
-            // We index the title and description so they are searchable
-            doc.add(new TextField("title", article.getTitle(), Field.Store.NO));
-            doc.add(new TextField("description", article.getDescription(), Field.Store.NO));
+    // Create a Lucene Document from our Article object
+    private static Document toDocument(Article article) {
+        Document doc = new Document();
+        // We store the link so we can identify the article later
+        doc.add(new StringField("link", article.getLink(), Field.Store.YES));
+        // We index the title and description so they are searchable. The title is also
+        // stored, together with the other summary fields, so that search results can be
+        // built from the index without asking the database.
+        doc.add(new TextField("title", Objects.toString(article.getTitle(), ""), Field.Store.YES));
+        doc.add(new TextField("description", Objects.toString(article.getDescription(), ""), Field.Store.NO));
+        // The full text from the article's page, once ContentFetcher has found it. A field
+        // of its own, weighted lower, so a match in a long body doesn't outrank the title.
+        if (article.getContent() != null) {
+            doc.add(new TextField("content", article.getContent(), Field.Store.NO));
+        }
+        if (article.getCategory() != null) {
+            doc.add(new StringField("category", article.getCategory(), Field.Store.YES));
+        }
+        doc.add(new LongPoint("pubDate", article.getPublishedAt()));
+        doc.add(new StoredField("pubDate", article.getPublishedAt()));
+        doc.add(new NumericDocValuesField("pubDate", article.getPublishedAt()));
+        // Doc values rather than a stored field, because they can be updated in place
+        // when the user toggles the bookmark.
+        doc.add(new NumericDocValuesField("bookmarked", article.isBookmarked() ? 1 : 0));
+        // Breaks ties between articles published at the same moment in the recency sort. A
+        // field of its own: "link" already exists without doc values, and Lucene won't add them.
+        doc.add(new SortedDocValuesField(LINK_SORT, new BytesRef(article.getLink())));
+        return doc;
+    }
+
+    // Keeps the bookmark flag in the index in step with the database.
+    public void setBookmarkStatus(String link, boolean isBookmarked) {
+        try {
+            writer.updateNumericDocValue(new Term("link", link), "bookmarked", isBookmarked ? 1 : 0);
+            uncommittedDocs.incrementAndGet();
+        } catch (IOException | IllegalArgumentException e) {
+            // IllegalArgumentException: no document in the index has the field yet.
+            System.err.println("Error updating bookmark in the search index [" + link + "]: " + e.getMessage());
+        }
+    }
 
-            // updateDocument will replace an existing article with the same link,
-            // or add it if it's new.
-            writer.updateDocument(new Term("link", article.getLink()), doc);
+    public long getIndexedSeq() {
+        return indexedSeq;
+    }
+
+    /**
+     * The lock held by IndexSync while it catches up, and by anyone deleting articles from
+     * both the database and the index, so a catch-up never re-adds rows deleted under it.
+     * The index's own refreshes and commits never take it, so searches keep seeing new
+     * documents during a long catch-up.
+     */
+    public Object getSyncLock() {
+        return syncLock;
+    }
 
+    // The version of the index searches currently see; it changes whenever a refresh exposes new changes.
+    public long getIndexVersion() {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                return ((DirectoryReader) searcher.getIndexReader()).getVersion();
+            } finally {
+                searcherManager.release(searcher);
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            System.err.println("Error reading the search index version: " + e.getMessage());
+            return -1;
         }
     }
 
-    // We will implement this search method in the next step
-    public List<Article> search(String queryString) {
-        List<String> foundLinks = new ArrayList<>();
-        try (Directory dir = FSDirectory.open(Paths.get(INDEX_DIR));
-             DirectoryReader reader = DirectoryReader.open(dir)) {
-
-            IndexSearcher searcher = new IndexSearcher(reader);
-            // This QueryParser will search in both the "title" and "description" fields
-            QueryParser parser = new QueryParser("title", new StandardAnalyzer());
-            Query query = parser.parse(queryString);
-
-            TopDocs hits = searcher.search(query, 100); // Find the top 100 results
-            for (ScoreDoc sd : hits.scoreDocs) {
-                Document d = searcher.doc(sd.doc);
-                foundLinks.add(d.get("link"));
+    /**
+     * Records that every article up to the given database seq has been indexed. The
+     * checkpoint is saved with the next commit, atomically with the documents it covers.
+     */
+    public void setIndexedSeq(long seq) {
+        indexedSeq = seq;
+        writer.setLiveCommitData(Collections.singletonMap(SEQ_KEY, Long.toString(seq)).entrySet());
+    }
+
+    // Removes deleted articles from the index. Searches stop finding them after the next refresh.
+    public void deleteArticles(Collection<String> links) {
+        if (links.isEmpty()) {
+            return;
+        }
+        Term[] terms = new Term[links.size()];
+        int i = 0;
+        for (String link : links) {
+            terms[i++] = new Term("link", link);
+        }
+        try {
+            writer.deleteDocuments(terms);
+            uncommittedDocs.addAndGet(terms.length);
+            suggestionsStale = true;
+        } catch (IOException e) {
+            System.err.println("Error deleting " + terms.length + " articles from the search index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Merges away the space held by deleted documents, commits, and rebuilds the title
+     * suggestions if articles were deleted since the last time. Blocks until the merges are
+     * done; they run on Lucene's merge threads, which throttle their own I/O, so searches
+     * and indexing carry on meanwhile. Meant for RetentionManager's background thread.
+     */
+    public void compact() {
+        long start = System.nanoTime();
+        try {
+            // Committing first applies the buffered deletes, so the counts below are real.
+            commit();
+            IndexWriter.DocStats before = writer.getDocStats();
+            writer.forceMergeDeletes(true);
+            commit();
+            if (suggestionsStale) {
+                suggestionsStale = false;
+                searcherManager.maybeRefreshBlocking();
+                buildSuggester();
             }
+            compactTimer.recordSince(start);
+            System.out.printf("Compacted the search index: %d deleted documents before, %d after, in %d ms%n",
+                    before.maxDoc - before.numDocs, writer.getDocStats().maxDoc - writer.getDocStats().numDocs,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error compacting the search index: " + e);
+        }
+    }
 
+    // Empties the index, e.g. when it turns out to be ahead of the database it mirrors.
+    public void deleteAll() {
+        try {
+            writer.deleteAll();
+            setIndexedSeq(0);
+        } catch (IOException e) {
+            System.err.println("Error clearing the search index: " + e.getMessage());
+        }
+    }
+
+    // Commits right away instead of waiting for the next scheduled commit.
+    public void commitNow() {
+        commit();
+    }
+
+    // Makes recent changes visible to searches.
+    private void refresh() {
+        try {
+            // Most refreshes find nothing new; only the ones that reopen the reader are timed.
+            if (!searcherManager.isSearcherCurrent()) {
+                long start = System.nanoTime();
+                searcherManager.maybeRefresh();
+                refreshTimer.recordSince(start);
+            }
+            cursorSearchers.prune(new SearcherLifetimeManager.PruneByAge(cursorMaxAgeSeconds));
+        } catch (IOException e) {
+            System.err.println("Error refreshing the search index: " + e.getMessage());
+        }
+        suggester.refresh();
+    }
+
+    // Flushes pending changes to disk, if there are any. IndexWriter serializes concurrent commits itself.
+    private void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                long start = System.nanoTime();
+                int docs = uncommittedDocs.getAndSet(0);
+                writer.commit();
+                commitTimer.recordSince(start);
+                System.out.println("Committed " + docs + " documents to the search index.");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error committing the search index: " + e.getMessage());
+        }
+        suggester.commit();
+    }
+
+    private void close() {
+        maintenance.shutdown();
+        try {
+            maintenance.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            cursorSearchers.close();
+            searcherManager.close();
+            // close() commits anything still pending.
+            writer.close();
+            directory.close();
+            suggester.close();
+        } catch (IOException e) {
+            System.err.println("Error closing the search index: " + e.getMessage());
+        }
+    }
+
+    // Up to count article titles that complete what has been typed, newest first.
+    public List<String> suggest(String typed, int count) {
+        long start = System.nanoTime();
+        List<String> titles = suggester.lookup(typed, count);
+        suggestTimer.recordSince(start);
+        return titles;
+    }
+
+    // Returns the top 100 matches for the text, best first.
+    public List<Article> search(String queryString) {
+        return search(new SearchQuery(queryString).pageSize(100)).getArticles();
+    }
+
+    /**
+     * Runs a search and returns one page of article summaries. The text is matched against
+     * title, description and the fetched full text, with the title weighted highest.
+     * Category, date range and bookmark state are applied as filters, so they cost no
+     * scoring work.
+     *
+     * The summaries come straight from stored fields and doc values in the index; only
+     * documents indexed before those fields existed are looked up in the database, all in
+     * one query.
+     *
+     * First pages are cached per query until the index changes, so typing back over a
+     * query that was just searched costs nothing. A relevance page's next page is read
+     * from the same searcher, which is kept for search.cursorMaxAgeSeconds after the
+     * index has moved on; after that the search throws StaleCursorException.
+     */
+    public SearchPage search(SearchQuery searchQuery) {
+        long start = System.nanoTime();
+        List<Article> results = new ArrayList<>();
+        List<String> missingLinks = new ArrayList<>();
+        long totalHits = 0;
+        ScoreDoc lastHit = null;
+        boolean hasMore = false;
+        long readerVersion = -1;
+        try {
+            Query query = buildQuery(searchQuery);
+            SearchPage previous = searchQuery.getAfter();
+            ScoreDoc after = previous == null ? null : previous.getLastHit();
+            boolean relevanceCursor = after != null && !(after instanceof FieldDoc);
+            // Scores and doc IDs from another reader would skip or repeat hits.
+            IndexSearcher searcher = relevanceCursor
+                    ? cursorSearchers.acquire(previous.getReaderVersion())
+                    : searcherManager.acquire();
+            if (searcher == null) {
+                throw new StaleCursorException();
+            }
+            try {
+                readerVersion = ((DirectoryReader) searcher.getIndexReader()).getVersion();
+                if (after instanceof FieldDoc) {
+                    // A recency position: (pubDate, link) names one article in any version of
+                    // the index, so its old doc ID isn't needed. The last ID of this reader
+                    // leaves out that article itself, whatever its ID is now.
+                    after = new FieldDoc(Math.max(0, searcher.getIndexReader().maxDoc() - 1), Float.NaN,
+                            ((FieldDoc) after).fields);
+                }
+                SearchPage cached = cachedPage(searchQuery, readerVersion);
+                if (cached != null) {
+                    searchTimer.recordSince(start);
+                    return cached;
+                }
+                TopDocs hits = searchQuery.getSort() == SearchQuery.Sort.RECENCY
+                        ? searcher.searchAfter(after, query, searchQuery.getPageSize(), NEWEST_FIRST)
+                        : searcher.searchAfter(after, query, searchQuery.getPageSize());
+                totalHits = hits.totalHits.value;
+                hasMore = hits.scoreDocs.length == searchQuery.getPageSize();
+                if (hits.scoreDocs.length > 0) {
+                    lastHit = hits.scoreDocs[hits.scoreDocs.length - 1];
+                }
+                if (hasMore && searchQuery.getSort() != SearchQuery.Sort.RECENCY && !relevanceCursor) {
+                    // Its token is the reader version the page carries.
+                    cursorSearchers.record(searcher);
+                }
+                StoredFields storedFields = searcher.storedFields();
+                List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+                for (ScoreDoc sd : hits.scoreDocs) {
+                    Document d = storedFields.document(sd.doc);
+                    if (d.get("title") == null) {
+                        // Indexed by an older version; fill it in from the database below.
+                        missingLinks.add(d.get("link"));
+                        results.add(null);
+                    } else {
+                        results.add(toSummary(d, leaves, sd.doc));
+                    }
+                }
+            } finally {
+                if (relevanceCursor) {
+                    cursorSearchers.release(searcher);
+                } else {
+                    searcherManager.release(searcher);
+                }
+            }
+        } catch (StaleCursorException e) {
+            throw e;
+        } catch (ParseException e) {
+            // Common while a query is still being typed, e.g. an unclosed quote.
+            System.err.println("Invalid search query [" + searchQuery.getText() + "]: " + e.getMessage());
+            return new SearchPage(results, 0, null, false, readerVersion);
         } catch (Exception e) {
             e.printStackTrace();
         }
+        // Index time only; the database lookup below has its own timer, db.querySummaries.
+        searchTimer.recordSince(start);
+
+        if (!missingLinks.isEmpty()) {
+            Map<String, Article> fromDatabase = new HashMap<>();
+            for (Article article : DatabaseManager.getInstance().getArticleSummaries(missingLinks)) {
+                fromDatabase.put(article.getLink(), article);
+            }
+            int next = 0;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, fromDatabase.get(missingLinks.get(next++)));
+                }
+            }
+            results.removeIf(Objects::isNull);
+        }
+
+        SearchPage page = new SearchPage(results, totalHits, lastHit, hasMore, readerVersion);
+        cachePage(searchQuery, readerVersion, page);
+        return page;
+    }
+
+    // The cached first page for the query, or null if the index has changed since.
+    private SearchPage cachedPage(SearchQuery searchQuery, long readerVersion) {
+        if (searchQuery.getAfter() != null) {
+            return null;
+        }
+        synchronized (recentResults) {
+            if (readerVersion != recentResultsVersion) {
+                recentResults.clear();
+                recentResultsVersion = readerVersion;
+                return null;
+            }
+            return recentResults.get(searchQuery);
+        }
+    }
+
+    private void cachePage(SearchQuery searchQuery, long readerVersion, SearchPage page) {
+        if (searchQuery.getAfter() != null || readerVersion < 0) {
+            return;
+        }
+        synchronized (recentResults) {
+            if (readerVersion == recentResultsVersion) {
+                recentResults.put(searchQuery, page);
+            }
+        }
+    }
+
+    // The same order as the listings: pubDate, then link, both descending. The link makes the
+    // order total, so searchAfter neither skips nor repeats articles that share a pubDate.
+    private static final String LINK_SORT = "linkSort";
+    private static final Sort NEWEST_FIRST = new Sort(new SortField("pubDate", SortField.Type.LONG, true),
+            new SortField(LINK_SORT, SortField.Type.STRING, true));
 
-        // Now, retrieve the full Article objects from the database using the found links
-        DatabaseManager dbManager = DatabaseManager.getInstance();
-        return foundLinks.stream()
-                .map(dbManager::getArticleByLink)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+    // Turns a SearchQuery into a Lucene query: the scored text match plus non-scoring filters.
+    private Query buildQuery(SearchQuery searchQuery) throws ParseException {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        if (searchQuery.getText().isEmpty()) {
+            query.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        } else {
+            MultiFieldQueryParser parser = new MultiFieldQueryParser(
+                    new String[]{"title", "description", "content"}, analyzer, fieldBoosts);
+            query.add(parser.parse(searchQuery.getText()), BooleanClause.Occur.MUST);
+        }
+        if (searchQuery.getCategory() != null) {
+            query.add(new TermQuery(new Term("category", searchQuery.getCategory())), BooleanClause.Occur.FILTER);
+        }
+        if (searchQuery.getPublishedFrom() != null || searchQuery.getPublishedTo() != null) {
+            long from = searchQuery.getPublishedFrom() == null ? Long.MIN_VALUE : searchQuery.getPublishedFrom();
+            long to = searchQuery.getPublishedTo() == null ? Long.MAX_VALUE : searchQuery.getPublishedTo();
+            query.add(LongPoint.newRangeQuery("pubDate", from, to), BooleanClause.Occur.FILTER);
+        }
+        if (searchQuery.isBookmarkedOnly()) {
+            // Bookmarks live in doc values so they can change in place; few docs match, so
+            // checking the value per candidate is cheap.
+            query.add(NumericDocValuesField.newSlowExactQuery("bookmarked", 1), BooleanClause.Occur.FILTER);
+        }
+        return query.build();
+    }
+
+    // Builds an Article summary from a hit's stored fields and doc values.
+    private static Article toSummary(Document d, List<LeafReaderContext> leaves, int docId) throws IOException {
+        Article article = new Article();
+        article.setLink(d.get("link"));
+        article.setTitle(d.get("title"));
+        article.setCategory(d.get("category"));
+        IndexableField pubDate = d.getField("pubDate");
+        if (pubDate != null) {
+            article.setPublishedAt(pubDate.numericValue().longValue());
+        }
+        LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+        NumericDocValues bookmarked = DocValues.getNumeric(leaf.reader(), "bookmarked");
+        article.setBookmarked(bookmarked.advanceExact(docId - leaf.docBase) && bookmarked.longValue() == 1);
+        return article;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package org.example;
+
+import org.apache.lucene.search.ScoreDoc;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of search results. Pass it back through SearchQuery.after(...) to get the next
+ * page; paging continues from the last hit rather than re-collecting everything before it.
+ */
+public class SearchPage {
+
+    private final List<Article> articles;
+    private final long totalHits;
+    private final ScoreDoc lastHit;
+    private final boolean hasMore;
+    private final long readerVersion;
+
+    public SearchPage(List<Article> articles, long totalHits, ScoreDoc lastHit, boolean hasMore, long readerVersion) {
+        this.articles = Collections.unmodifiableList(articles);
+        this.totalHits = totalHits;
+        this.lastHit = lastHit;
+        this.hasMore = hasMore;
+        this.readerVersion = readerVersion;
+    }
+
+    public List<Article> getArticles() {
+        return articles;
+    }
+
+    // May be a lower bound for very broad queries.
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * The position to continue from; only meaningful to SearchManager. For the recency
+     * sort it is the last hit's (pubDate, link), which stays valid as the index changes.
+     * For relevance it is a score and a Lucene doc ID, which are only valid for the
+     * searcher that produced them, so SearchManager reads the next page from that same
+     * searcher while it keeps it, and refuses the cursor after (StaleCursorException).
+     */
+    ScoreDoc getLastHit() {
+        return lastHit;
+    }
+
+    // The version of the index reader the page was read from; also its searcher's token in SearchManager.
+    long getReaderVersion() {
+        return readerVersion;
+    }
+}
@@ -0,0 +1,118 @@
+package org.example;
+
+import java.util.Objects;
+
+/**
+ * A full-text search request: the user's text plus optional filters, sort order and page.
+ * Filters narrow the results without affecting their scores.
+ *
+ *   new SearchQuery("budget").category("Business-Markets").sortBy(SearchQuery.Sort.RECENCY)
+ */
+public class SearchQuery {
+
+    public enum Sort {
+        // Best match first.
+        RELEVANCE,
+        // Newest first.
+        RECENCY
+    }
+
+    private final String text;
+    private String category;
+    private Long publishedFrom;
+    private Long publishedTo;
+    private boolean bookmarkedOnly;
+    private Sort sort = Sort.RELEVANCE;
+    private int pageSize = 50;
+    private SearchPage after;
+
+    // Text in Lucene query syntax; blank matches every article that passes the filters.
+    public SearchQuery(String text) {
+        this.text = text == null ? "" : text.trim();
+    }
+
+    public SearchQuery category(String category) {
+        this.category = category;
+        return this;
+    }
+
+    // Only articles published in [fromMillis, toMillis]; either end may be null for open-ended.
+    public SearchQuery publishedBetween(Long fromMillis, Long toMillis) {
+        this.publishedFrom = fromMillis;
+        this.publishedTo = toMillis;
+        return this;
+    }
+
+    public SearchQuery bookmarkedOnly(boolean bookmarkedOnly) {
+        this.bookmarkedOnly = bookmarkedOnly;
+        return this;
+    }
+
+    public SearchQuery sortBy(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    public SearchQuery pageSize(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+        return this;
+    }
+
+    // Continue from the end of a page returned for the same query.
+    public SearchQuery after(SearchPage previousPage) {
+        this.after = previousPage;
+        return this;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Long getPublishedFrom() {
+        return publishedFrom;
+    }
+
+    public Long getPublishedTo() {
+        return publishedTo;
+    }
+
+    public boolean isBookmarkedOnly() {
+        return bookmarkedOnly;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public SearchPage getAfter() {
+        return after;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchQuery)) {
+            return false;
+        }
+        SearchQuery other = (SearchQuery) o;
+        return bookmarkedOnly == other.bookmarkedOnly && pageSize == other.pageSize && text.equals(other.text)
+                && Objects.equals(category, other.category) && Objects.equals(publishedFrom, other.publishedFrom)
+                && Objects.equals(publishedTo, other.publishedTo) && sort == other.sort && after == other.after;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(text, category, publishedFrom, publishedTo, bookmarkedOnly, sort, pageSize,
+                System.identityHashCode(after));
+    }
+}
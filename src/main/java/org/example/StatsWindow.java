@@ -0,0 +1,65 @@
+package org.example;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.ToolBar;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.util.Duration;
+
+/**
+ * A window showing Metrics.report(): timers, per-feed fetch statistics and cache hit rates,
+ * refreshed every second while it is open. Opened from the main toolbar; costs nothing
+ * while closed.
+ *
+ * All methods must be called on the JavaFX Application Thread.
+ */
+public class StatsWindow {
+
+    private static StatsWindow instance;
+
+    private final Stage stage = new Stage();
+    private final TextArea text = new TextArea();
+    private final Timeline refresher = new Timeline(new KeyFrame(Duration.seconds(1), event -> refresh()));
+
+    private StatsWindow(Window owner) {
+        text.setEditable(false);
+        text.setStyle("-fx-font-family: monospace;");
+        Button reset = new Button("Reset timers");
+        reset.setOnAction(event -> {
+            Metrics.getInstance().resetTimers();
+            refresh();
+        });
+        BorderPane root = new BorderPane(text);
+        root.setTop(new ToolBar(reset));
+        refresher.setCycleCount(Timeline.INDEFINITE);
+
+        stage.initOwner(owner);
+        stage.setTitle("NewsCache statistics");
+        stage.setScene(new Scene(root, 1100, 600));
+        stage.setOnShown(event -> {
+            refresh();
+            refresher.play();
+        });
+        stage.setOnHidden(event -> refresher.stop());
+    }
+
+    // Shows the window, or brings it to the front if it is already open.
+    public static void show(Window owner) {
+        if (instance == null) {
+            instance = new StatsWindow(owner);
+        }
+        instance.stage.show();
+        instance.stage.toFront();
+    }
+
+    private void refresh() {
+        double scrollTop = text.getScrollTop();
+        text.setText(Metrics.getInstance().report());
+        text.setScrollTop(scrollTop);
+    }
+}
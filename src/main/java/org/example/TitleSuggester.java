@@ -0,0 +1,135 @@
+package org.example;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.suggest.DocumentDictionary;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Completes what the user is typing into article titles. Backed by an
+ * AnalyzingInfixSuggester, which keeps its own small index in "lucene-suggest" next to the
+ * main search index, so a lookup is a quick search rather than a scan over every title.
+ * Words anywhere in a title match, the last word typed is treated as a prefix, and newer
+ * articles come first.
+ */
+public class TitleSuggester {
+
+    private static final String SUGGEST_DIR = "lucene-suggest";
+
+    private final AnalyzingInfixSuggester suggester;
+    // Set when titles were added since the last commit.
+    private volatile boolean dirty;
+    // False until the suggester has an index to search: built, reopened or first added to.
+    private volatile boolean ready;
+
+    TitleSuggester(Analyzer analyzer) throws IOException {
+        // commitOnBuild = true, allTermsRequired = true, highlight = false, closeIndexDir = true
+        suggester = new AnalyzingInfixSuggester(FSDirectory.open(AppSettings.getInstance().dataPath(SUGGEST_DIR)), analyzer, analyzer,
+                AnalyzingInfixSuggester.DEFAULT_MIN_PREFIX_CHARS, true, true, false, true);
+        ready = !isEmpty();
+    }
+
+    public boolean isEmpty() {
+        try {
+            return suggester.getCount() == 0;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Replaces the suggestions with every title in the given search index. Used once, when
+     * the suggester is missing but the search index isn't, so its titles don't have to be
+     * re-read from the database.
+     */
+    public synchronized void build(IndexReader reader) {
+        long start = System.nanoTime();
+        try {
+            // Weighted by pubDate so newer titles rank first; the link rides along as the payload.
+            suggester.build(new DocumentDictionary(reader, "title", "pubDate", "link"));
+            ready = true;
+            System.out.printf("Built title suggestions from %d articles in %d ms%n",
+                    reader.numDocs(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error building title suggestions: " + e);
+        }
+    }
+
+    // Adds the articles' titles. A title that is already known is replaced, not repeated.
+    public synchronized void add(Collection<Article> articles) {
+        try {
+            for (Article article : articles) {
+                String title = article.getTitle();
+                if (title == null || title.isBlank()) {
+                    continue;
+                }
+                suggester.update(new BytesRef(title), null, article.getPublishedAt(), new BytesRef(article.getLink()));
+                dirty = true;
+                ready = true;
+            }
+        } catch (IOException e) {
+            System.err.println("Error adding title suggestions: " + e.getMessage());
+        }
+    }
+
+    // Up to count distinct titles matching what has been typed so far, newest first.
+    public List<String> lookup(String typed, int count) {
+        if (typed == null || typed.isBlank()) {
+            return new ArrayList<>();
+        }
+        try {
+            Set<String> titles = new LinkedHashSet<>();
+            for (Lookup.LookupResult result : suggester.lookup(typed, (Set<BytesRef>) null, count, true, false)) {
+                titles.add(result.key.toString());
+            }
+            return new ArrayList<>(titles);
+        } catch (IOException | RuntimeException e) {
+            // RuntimeException: the suggester has no searcher until the first build or refresh.
+            return new ArrayList<>();
+        }
+    }
+
+    // Makes recently added titles visible to lookups. Synchronized because a rebuild
+    // replaces the suggester's writer underneath it.
+    synchronized void refresh() {
+        if (!ready) {
+            return;
+        }
+        try {
+            suggester.refresh();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error refreshing title suggestions: " + e.getMessage());
+        }
+    }
+
+    synchronized void commit() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            dirty = false;
+            suggester.commit();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error committing title suggestions: " + e.getMessage());
+        }
+    }
+
+    synchronized void close() {
+        try {
+            // Closing the suggester's writer commits anything still pending.
+            suggester.close();
+        } catch (IOException e) {
+            System.err.println("Error closing title suggestions: " + e.getMessage());
+        }
+    }
+}